@@ -0,0 +1,96 @@
+package com.owen.tvrecyclerview;
+
+import com.owen.tvrecyclerview.Lanes.LaneInfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Item entry table operations at random positions of a fully populated table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ItemEntriesBenchmark {
+    private static final int LANE_COUNT = 4;
+    private static final int POSITION_COUNT = 4096;
+
+    @Param({"1000", "10000", "100000"})
+    public int itemCount;
+
+    private ItemEntries mItemEntries;
+    private final LaneInfo mLaneInfo = new LaneInfo();
+
+    private int[] mPositions;
+    private int mPositionIndex;
+
+    @Setup
+    public void setUp() {
+        mItemEntries = new ItemEntries();
+        mItemEntries.setAdapterSize(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            final int lane = i % LANE_COUNT;
+            mItemEntries.putItemEntry(i, lane, lane, 1, 480, 270);
+        }
+
+        final Random random = new Random(42);
+        mPositions = new int[POSITION_COUNT];
+        for (int i = 0; i < POSITION_COUNT; i++) {
+            mPositions[i] = random.nextInt(itemCount);
+        }
+    }
+
+    private int nextPosition() {
+        mPositionIndex = (mPositionIndex + 1) & (POSITION_COUNT - 1);
+        return mPositions[mPositionIndex];
+    }
+
+    @Benchmark
+    public void putItemEntry() {
+        final int position = nextPosition();
+        final int lane = position % LANE_COUNT;
+        mItemEntries.putItemEntry(position, lane, lane, 1, 480, 270);
+    }
+
+    @Benchmark
+    public int getLane() {
+        mItemEntries.getLane(nextPosition(), mLaneInfo);
+        return mLaneInfo.startLane;
+    }
+
+    @Benchmark
+    public int getSize() {
+        final int position = nextPosition();
+        return mItemEntries.getWidth(position) + mItemEntries.getHeight(position);
+    }
+
+    @Benchmark
+    public int offsetForAdditionAndRemoval() {
+        // Insert and remove a row so the table keeps its size.
+        final int position = nextPosition();
+        mItemEntries.offsetForAddition(position, LANE_COUNT);
+        mItemEntries.offsetForRemoval(position, LANE_COUNT);
+        return mItemEntries.size();
+    }
+
+    @Benchmark
+    public int invalidateItemLanesAfter() {
+        mItemEntries.invalidateItemLanesAfter(nextPosition());
+        return mItemEntries.size();
+    }
+}
@@ -0,0 +1,174 @@
+package com.owen.tvrecyclerview;
+
+import android.graphics.Rect;
+
+import com.owen.tvrecyclerview.Lanes.LaneInfo;
+import com.owen.tvrecyclerview.TwoWayLayoutManager.Direction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saved state encoding of the item entries with {@link ItemEntriesCodec},
+ * against the previous format: every column written as a length prefixed
+ * int array, 4 bytes per value, as Parcel.writeIntArray() lays them out.
+ * Parcel itself needs the framework, so the previous format is written to a
+ * ByteBuffer with the same layout.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ItemEntriesCodecBenchmark {
+    private static final int LANE_COUNT = 4;
+
+    public enum Layout {
+        GRID,
+        STAGGERED
+    }
+
+    @Param({"GRID", "STAGGERED"})
+    public Layout layout;
+
+    @Param({"1000", "10000", "100000"})
+    public int itemCount;
+
+    private ItemEntries mItemEntries;
+    private byte[] mEncoded;
+    private ByteBuffer mIntArrays;
+
+    @Setup
+    public void setUp() {
+        mItemEntries = createItemEntries(layout, itemCount);
+        mEncoded = ItemEntriesCodec.encode(mItemEntries);
+        mIntArrays = ByteBuffer.allocate(intArraysSize(mItemEntries.size()));
+        writeIntArrays(mItemEntries, mIntArrays);
+    }
+
+    static ItemEntries createItemEntries(Layout layout, int itemCount) {
+        final Lanes lanes = new Lanes(new BaseLayoutManager(true, 1920, 1080), LANE_COUNT);
+        final int laneSize = lanes.getLaneSize();
+        final ItemEntries itemEntries = new ItemEntries();
+        itemEntries.setAdapterSize(itemCount);
+        final LaneInfo laneInfo = new LaneInfo();
+        final Rect frame = new Rect();
+
+        final Random random = new Random(42);
+        for (int i = 0; i < itemCount; i++) {
+            final boolean staggered = (layout == Layout.STAGGERED);
+            final int span = (staggered && i % 10 == 0 ? 2 : 1);
+            final int width = laneSize * span;
+            final int height = (staggered ? 150 + random.nextInt(300) : laneSize);
+
+            lanes.findLane(laneInfo, span, Direction.END);
+            lanes.getChildFrame(frame, width, height, laneInfo, Direction.END);
+            for (int lane = laneInfo.startLane; lane < laneInfo.startLane + span; lane++) {
+                lanes.pushChildFrame(frame, lane, 0, Direction.END);
+            }
+
+            itemEntries.putItemEntry(i, laneInfo.startLane, laneInfo.anchorLane, span,
+                    width, height);
+        }
+
+        return itemEntries;
+    }
+
+    static int intArraysSize(int size) {
+        // The size, then five length prefixed columns and the margin count.
+        return 4 + 5 * (4 + size * 4) + 4;
+    }
+
+    static void writeIntArrays(ItemEntries itemEntries, ByteBuffer out) {
+        final int size = itemEntries.size();
+        out.clear();
+        out.putInt(size);
+
+        out.putInt(size);
+        for (int i = 0; i < size; i++) {
+            out.putInt(itemEntries.getStartLane(i));
+        }
+
+        out.putInt(size);
+        for (int i = 0; i < size; i++) {
+            out.putInt(itemEntries.getAnchorLane(i));
+        }
+
+        out.putInt(size);
+        for (int i = 0; i < size; i++) {
+            out.putInt(itemEntries.getSpan(i));
+        }
+
+        out.putInt(size);
+        for (int i = 0; i < size; i++) {
+            out.putInt(itemEntries.getWidth(i));
+        }
+
+        out.putInt(size);
+        for (int i = 0; i < size; i++) {
+            out.putInt(itemEntries.getHeight(i));
+        }
+
+        out.putInt(0);
+    }
+
+    static ItemEntries readIntArrays(ByteBuffer in) {
+        in.rewind();
+
+        final int size = in.getInt();
+        final int[][] columns = new int[5][];
+        for (int c = 0; c < columns.length; c++) {
+            final int[] column = new int[in.getInt()];
+            for (int i = 0; i < column.length; i++) {
+                column[i] = in.getInt();
+            }
+            columns[c] = column;
+        }
+
+        final ItemEntries itemEntries = new ItemEntries();
+        itemEntries.restoreSize(size);
+        for (int i = 0; i < size; i++) {
+            if (columns[2][i] > 0) {
+                itemEntries.putItemEntry(i, columns[0][i], columns[1][i], columns[2][i],
+                        columns[3][i], columns[4][i]);
+            }
+        }
+
+        return itemEntries;
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return ItemEntriesCodec.encode(mItemEntries);
+    }
+
+    @Benchmark
+    public ItemEntries decode() {
+        return ItemEntriesCodec.decode(mEncoded);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeIntArrays() {
+        writeIntArrays(mItemEntries, mIntArrays);
+        return mIntArrays;
+    }
+
+    @Benchmark
+    public ItemEntries decodeIntArrays() {
+        return readIntArrays(mIntArrays);
+    }
+}
@@ -0,0 +1,113 @@
+package com.owen.tvrecyclerview;
+
+import android.graphics.Rect;
+
+import com.owen.tvrecyclerview.Lanes.LaneInfo;
+import com.owen.tvrecyclerview.TwoWayLayoutManager.Direction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lane placement and edge bookkeeping on an uneven skyline, as left by a
+ * staggered layout.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LanesBenchmark {
+    private static final int FRAME_COUNT = 1024;
+
+    @Param({"2", "4", "8", "16"})
+    public int laneCount;
+
+    private Lanes mLanes;
+    private final LaneInfo mLaneInfo = new LaneInfo();
+
+    // Frames of items already placed, pushed and popped in turn so that the
+    // lane edges stay bounded across invocations.
+    private Rect[] mFrames;
+    private int[] mFrameLanes;
+    private int mFrameIndex;
+
+    @Setup
+    public void setUp() {
+        final BaseLayoutManager layout = new BaseLayoutManager(true, 1920, 1080);
+        mLanes = new Lanes(layout, laneCount);
+
+        final Random random = new Random(42);
+        mFrames = new Rect[FRAME_COUNT];
+        mFrameLanes = new int[FRAME_COUNT];
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            mLanes.findLane(mLaneInfo, 1, Direction.END);
+
+            final Rect frame = new Rect();
+            mLanes.getChildFrame(frame, mLanes.getLaneSize(), 150 + random.nextInt(300),
+                    mLaneInfo, Direction.END);
+            mLanes.pushChildFrame(frame, mLaneInfo.startLane, 0, Direction.END);
+
+            mFrames[i] = frame;
+            mFrameLanes[i] = mLaneInfo.startLane;
+        }
+    }
+
+    private int nextFrame() {
+        mFrameIndex = (mFrameIndex + 1) & (FRAME_COUNT - 1);
+        return mFrameIndex;
+    }
+
+    @Benchmark
+    public int findLane() {
+        mLanes.findLane(mLaneInfo, 1, Direction.END);
+        return mLaneInfo.anchorLane;
+    }
+
+    @Benchmark
+    public int findLaneSpanningTwo() {
+        mLanes.findLane(mLaneInfo, Math.min(2, laneCount), Direction.END);
+        return mLaneInfo.anchorLane;
+    }
+
+    @Benchmark
+    public int findLaneTowardsStart() {
+        mLanes.findLane(mLaneInfo, 1, Direction.START);
+        return mLaneInfo.anchorLane;
+    }
+
+    @Benchmark
+    public int pushChildFrame() {
+        final int i = nextFrame();
+        return mLanes.pushChildFrame(mFrames[i], mFrameLanes[i], 0, Direction.END);
+    }
+
+    @Benchmark
+    public void popChildFrame() {
+        final int i = nextFrame();
+        mLanes.popChildFrame(mFrames[i], mFrameLanes[i], 0, Direction.END);
+    }
+
+    @Benchmark
+    public int getInnerStart() {
+        return mLanes.getInnerStart();
+    }
+
+    @Benchmark
+    public int getInnerEnd() {
+        return mLanes.getInnerEnd();
+    }
+}
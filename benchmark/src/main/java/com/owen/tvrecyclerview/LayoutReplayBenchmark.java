@@ -0,0 +1,135 @@
+package com.owen.tvrecyclerview;
+
+import android.graphics.Rect;
+
+import com.owen.tvrecyclerview.Lanes.LaneInfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays every item up to the last position into the lanes, the way
+ * moveLayoutToPosition() does when jumping to the end of a vertical layout.
+ *
+ * Runs the same {@link LaneReplay} as StaggeredGridLayoutManager and
+ * SpannableGridLayoutManager with item sizes already cached, so no views
+ * are measured. Grid items all have the same size and a single lane span.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LayoutReplayBenchmark {
+    private static final int LANE_COUNT = 4;
+
+    public enum Layout {
+        GRID,
+        STAGGERED,
+        SPANNABLE
+    }
+
+    @Param({"GRID", "STAGGERED", "SPANNABLE"})
+    public Layout layout;
+
+    @Param({"1000", "10000", "100000"})
+    public int itemCount;
+
+    private Lanes mLanes;
+    private ItemEntries mItemEntries;
+    private LaneCheckpoints mLaneCheckpoints;
+    private LaneReplay mLaneReplay;
+
+    private final LaneInfo mLaneInfo = new LaneInfo();
+    private final Rect mFrame = new Rect();
+
+    private final LaneReplay.Callback mCallback = new LaneReplay.Callback() {
+        @Override
+        public void createItemEntry(int position) {
+            throw new IllegalStateException("No item entry for position " + position);
+        }
+
+        @Override
+        public void onItemEntryChanged(int position) {
+            // No decorations here.
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        final BaseLayoutManager layoutManager = new BaseLayoutManager(true, 1920, 1080);
+        mLanes = new Lanes(layoutManager, LANE_COUNT);
+        mItemEntries = new ItemEntries();
+        mItemEntries.setAdapterSize(itemCount);
+        mLaneCheckpoints = new LaneCheckpoints();
+        mLaneReplay = new LaneReplay(mLaneCheckpoints);
+
+        final int laneSize = mLanes.getLaneSize();
+        final Random random = new Random(42);
+        for (int i = 0; i < itemCount; i++) {
+            final int span;
+            final int height;
+            switch (layout) {
+                case STAGGERED:
+                    span = (i % 10 == 0 ? 2 : 1);
+                    height = 150 + random.nextInt(300);
+                    break;
+
+                case SPANNABLE:
+                    span = 1 + random.nextInt(2);
+                    height = laneSize * (1 + random.nextInt(2));
+                    break;
+
+                default:
+                    span = 1;
+                    height = laneSize;
+                    break;
+            }
+
+            mItemEntries.putItemEntry(i, Lanes.NO_LANE, Lanes.NO_LANE, span,
+                    laneSize * span, height);
+        }
+
+        // Finds the lanes of every item and records the checkpoints.
+        moveLayoutToPosition(itemCount - 1);
+    }
+
+    private int moveLayoutToPosition(int position) {
+        mLaneReplay.replay(mLanes, mItemEntries, position, mCallback, mLaneInfo, mFrame);
+        return mFrame.bottom;
+    }
+
+    @Benchmark
+    public int replayCachedLanes() {
+        // As after the checkpoints were dropped, e.g. by a size change at
+        // the first position.
+        mLaneCheckpoints.clear();
+        return moveLayoutToPosition(itemCount - 1);
+    }
+
+    @Benchmark
+    public int replayInvalidatedLanes() {
+        // As after a change at the first position.
+        mItemEntries.invalidateItemLanesAfter(0);
+        mLaneCheckpoints.clear();
+        return moveLayoutToPosition(itemCount - 1);
+    }
+
+    @Benchmark
+    public int replayFromCheckpoint() {
+        return moveLayoutToPosition(itemCount - 1);
+    }
+}
@@ -0,0 +1,78 @@
+package com.owen.tvrecyclerview;
+
+/**
+ * Stand-in for the library's BaseLayoutManager with a fixed size and no
+ * padding, and the same {@link ItemEntry} as the real one.
+ */
+public class BaseLayoutManager extends TwoWayLayoutManager {
+    protected static class ItemEntry {
+        public int startLane;
+        public int anchorLane;
+        public int span;
+        public int width;
+        public int height;
+
+        int[] spanMargins;
+
+        public ItemEntry(int startLane, int anchorLane) {
+            this(startLane, anchorLane, 1, 0, 0);
+        }
+
+        public ItemEntry(int startLane, int anchorLane, int span, int width, int height) {
+            this.startLane = startLane;
+            this.anchorLane = anchorLane;
+            this.span = span;
+            this.width = width;
+            this.height = height;
+        }
+
+        public void setLane(Lanes.LaneInfo laneInfo) {
+            startLane = laneInfo.startLane;
+            anchorLane = laneInfo.anchorLane;
+        }
+
+        public void invalidateLane() {
+            startLane = Lanes.NO_LANE;
+            anchorLane = Lanes.NO_LANE;
+            spanMargins = null;
+        }
+    }
+
+    private final boolean mIsVertical;
+    private final int mWidth;
+    private final int mHeight;
+
+    public BaseLayoutManager(boolean isVertical, int width, int height) {
+        mIsVertical = isVertical;
+        mWidth = width;
+        mHeight = height;
+    }
+
+    public boolean isVertical() {
+        return mIsVertical;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getPaddingLeft() {
+        return 0;
+    }
+
+    public int getPaddingTop() {
+        return 0;
+    }
+
+    public int getPaddingRight() {
+        return 0;
+    }
+
+    public int getPaddingBottom() {
+        return 0;
+    }
+}
@@ -0,0 +1,17 @@
+package com.owen.tvrecyclerview;
+
+/**
+ * Stand-in for the library's TwoWayLayoutManager, only declaring the nested
+ * types used by the layout core.
+ */
+public abstract class TwoWayLayoutManager {
+    public static enum Orientation {
+        HORIZONTAL,
+        VERTICAL
+    }
+
+    public static enum Direction {
+        START,
+        END
+    }
+}
@@ -20,6 +20,7 @@ import android.content.Context;
 import android.graphics.Rect;
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.support.v4.view.ViewCompat;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.RecyclerView.LayoutParams;
 import android.support.v7.widget.RecyclerView.Recycler;
@@ -31,50 +32,38 @@ import android.view.ViewGroup.MarginLayoutParams;
 
 import com.owen.tvrecyclerview.Lanes.LaneInfo;
 
+import java.util.Arrays;
+
 
 public abstract class BaseLayoutManager extends TwoWayLayoutManager {
     private static final String LOGTAG = BaseLayoutManager.class.getSimpleName();
 
-    protected static class ItemEntry implements Parcelable {
+    private static final int MAX_FOCUS_SEARCH_ROWS = 4;
+
+    /**
+     * Value snapshot of the entry cached for a position. The entries are stored
+     * in primitive columns by {@link ItemEntries}, use the position based
+     * accessors below to avoid allocating one of these per item.
+     */
+    protected static class ItemEntry {
         public int startLane;
         public int anchorLane;
+        public int span;
+        public int width;
+        public int height;
 
-        private int[] spanMargins;
+        int[] spanMargins;
 
         public ItemEntry(int startLane, int anchorLane) {
-            this.startLane = startLane;
-            this.anchorLane = anchorLane;
-        }
-
-        public ItemEntry(Parcel in) {
-            startLane = in.readInt();
-            anchorLane = in.readInt();
-
-            final int marginCount = in.readInt();
-            if (marginCount > 0) {
-                spanMargins = new int[marginCount];
-                for (int i = 0; i < marginCount; i++) {
-                    spanMargins[i] = in.readInt();
-                }
-            }
+            this(startLane, anchorLane, 1, 0, 0);
         }
 
-        @Override
-        public int describeContents() {
-            return 0;
-        }
-
-        @Override
-        public void writeToParcel(Parcel out, int flags) {
-            out.writeInt(startLane);
-            out.writeInt(anchorLane);
-
-            final int marginCount = (spanMargins != null ? spanMargins.length : 0);
-            out.writeInt(marginCount);
-
-            for (int i = 0; i < marginCount; i++) {
-                out.writeInt(spanMargins[i]);
-            }
+        public ItemEntry(int startLane, int anchorLane, int span, int width, int height) {
+            this.startLane = startLane;
+            this.anchorLane = anchorLane;
+            this.span = span;
+            this.width = width;
+            this.height = height;
         }
 
         public void setLane(Lanes.LaneInfo laneInfo) {
@@ -87,39 +76,6 @@ public abstract class BaseLayoutManager extends TwoWayLayoutManager {
             anchorLane = Lanes.NO_LANE;
             spanMargins = null;
         }
-
-        private boolean hasSpanMargins() {
-            return (spanMargins != null);
-        }
-
-        private int getSpanMargin(int index) {
-            if (spanMargins == null) {
-                return 0;
-            }
-
-            return spanMargins[index];
-        }
-
-        private void setSpanMargin(int index, int margin, int span) {
-            if (spanMargins == null) {
-                spanMargins = new int[span];
-            }
-
-            spanMargins[index] = margin;
-        }
-
-        public static final Creator<ItemEntry> CREATOR
-                = new Creator<ItemEntry>() {
-            @Override
-            public ItemEntry createFromParcel(Parcel in) {
-                return new ItemEntry(in);
-            }
-
-            @Override
-            public ItemEntry[] newArray(int size) {
-                return new ItemEntry[size];
-            }
-        };
     }
 
     private enum UpdateOp {
@@ -132,9 +88,60 @@ public abstract class BaseLayoutManager extends TwoWayLayoutManager {
     private Lanes mLanes;
     private Lanes mLanesToRestore;
 
+    // Lane searches made by the lanes replaced so far, see getFindLaneCount().
+    private int mRetiredFindLaneCount;
+
     private ItemEntries mItemEntries;
     private ItemEntries mItemEntriesToRestore;
 
+    private final LaneCheckpoints mLaneCheckpoints = new LaneCheckpoints();
+    private final LaneReplay mLaneReplay = new LaneReplay(mLaneCheckpoints);
+    private final DecorationIndex mDecorationIndex = new DecorationIndex();
+
+    // Last position placed in each lane, known once the last item has been
+    // placed since the decorations were last invalidated.
+    private int[] mTailPositions;
+    private int mTailItemCount;
+    private boolean mTailPositionsKnown;
+    private boolean mTailPositionsQueried;
+    private final LaneInfo mTailLaneInfo = new LaneInfo();
+
+    // Item decorations can't be invalidated in the middle of a layout, so
+    // the insets of the tail children are refreshed on the next frame.
+    private final Runnable mInvalidateTailDecorationsRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mRecyclerView != null && !mRecyclerView.isComputingLayout()) {
+                mRecyclerView.invalidateItemDecorations();
+            }
+        }
+    };
+
+    // Recycler of the replay in progress, see replayItemEntries().
+    private Recycler mReplayRecycler;
+    private final LaneReplay.Callback mLaneReplayCallback = new LaneReplay.Callback() {
+        @Override
+        public void createItemEntry(int position) {
+            createItemEntryForPosition(position, mReplayRecycler);
+        }
+
+        @Override
+        public void onItemEntryChanged(int position) {
+            // Decorations of the following items depend on this entry.
+            invalidateDecorationsAfter(position);
+        }
+    };
+
+    private SpanSizeLookup mSpanSizeLookup;
+
+    private int mSavedItemEntriesWindow;
+
+    // Adapter updates waiting to be applied to the item entries, stored as
+    // (op, positionStart, itemCount, toPosition) records.
+    private int[] mPendingUpdates;
+    private int mPendingUpdateCount;
+    private int mPendingInvalidationStart = RecyclerView.NO_POSITION;
+
     protected final Rect mChildFrame = new Rect();
     protected final Rect mTempRect = new Rect();
     protected final LaneInfo mTempLaneInfo = new LaneInfo();
@@ -151,32 +158,20 @@ public abstract class BaseLayoutManager extends TwoWayLayoutManager {
         super(orientation);
     }
 
-    protected void pushChildFrame(ItemEntry entry, Rect childFrame, int lane, int laneSpan,
+    protected void pushChildFrame(int position, Rect childFrame, int lane, int laneSpan,
                                   Direction direction) {
-        final boolean shouldSetMargins = (direction == Direction.END &&
-                                          entry != null && !entry.hasSpanMargins());
-
-        for (int i = lane; i < lane + laneSpan; i++) {
-            final int spanMargin;
-            if (entry != null && direction != Direction.END) {
-                spanMargin = entry.getSpanMargin(i - lane);
-            } else {
-                spanMargin = 0;
-            }
-
-            final int margin = mLanes.pushChildFrame(childFrame, i, spanMargin, direction);
-            if (laneSpan > 1 && shouldSetMargins) {
-                entry.setSpanMargin(i - lane, margin, laneSpan);
-            }
-        }
+        LaneReplay.pushChildFrame(mLanes, mItemEntries, position, childFrame, lane, laneSpan,
+                direction);
     }
 
-    private void popChildFrame(ItemEntry entry, Rect childFrame, int lane, int laneSpan,
+    private void popChildFrame(int position, Rect childFrame, int lane, int laneSpan,
                                Direction direction) {
+        final boolean hasEntry = hasItemEntryForPosition(position);
+
         for (int i = lane; i < lane + laneSpan; i++) {
             final int spanMargin;
-            if (entry != null && direction != Direction.END) {
-                spanMargin = entry.getSpanMargin(i - lane);
+            if (hasEntry && direction != Direction.END) {
+                spanMargin = mItemEntries.getSpanMargin(position, i - lane);
             } else {
                 spanMargin = 0;
             }
@@ -200,38 +195,294 @@ public abstract class BaseLayoutManager extends TwoWayLayoutManager {
         return mLanes;
     }
 
+    private void invalidateDecorationsAfter(int position) {
+        mDecorationIndex.invalidateAfter(position);
+        mTailPositionsKnown = false;
+    }
+
+    private void clearDecorations() {
+        mDecorationIndex.clear();
+        mTailPositionsKnown = false;
+    }
+
+    /**
+     * Records the last position placed in each lane by walking back from the
+     * last item, whose lane is already known, until every lane is covered.
+     * If decorations asked {@link #isLastChildInLane(int, int)} before the
+     * tail was known, their insets are invalidated once the layout is done.
+     */
+    private void updateTailPositions(int itemCount) {
+        final int laneCount = mLanes.getCount();
+        if (mTailPositions == null || mTailPositions.length != laneCount) {
+            mTailPositions = new int[laneCount];
+        }
+
+        Arrays.fill(mTailPositions, RecyclerView.NO_POSITION);
+        mTailPositionsKnown = false;
+
+        int remaining = laneCount;
+        for (int position = itemCount - 1; position >= 0 && remaining > 0; position--) {
+            getLaneForPosition(mTailLaneInfo, position, Direction.END);
+            if (mTailLaneInfo.isUndefined()) {
+                return;
+            }
+
+            final int startLane = mTailLaneInfo.startLane;
+            final int endLane =
+                    Math.min(laneCount, startLane + Math.max(1, getLaneSpanForPosition(position)));
+            for (int lane = startLane; lane < endLane; lane++) {
+                if (mTailPositions[lane] == RecyclerView.NO_POSITION) {
+                    mTailPositions[lane] = position;
+                    remaining--;
+                }
+            }
+        }
+
+        mTailItemCount = itemCount;
+        mTailPositionsKnown = true;
+
+        if (mTailPositionsQueried) {
+            mTailPositionsQueried = false;
+            if (mRecyclerView != null) {
+                ViewCompat.postOnAnimation(mRecyclerView, mInvalidateTailDecorationsRunnable);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the given position is the last one in every lane it
+     * spans, i.e. no item is placed after it in those lanes. Always false
+     * until the lane of the last item is known.
+     */
+    public boolean isLastChildInLane(int position, int itemCount) {
+        if (!mTailPositionsKnown || mTailItemCount != itemCount) {
+            mTailPositionsQueried = true;
+            return false;
+        }
+
+        getLaneForPosition(mTailLaneInfo, position, Direction.END);
+        if (mTailLaneInfo.isUndefined()) {
+            return false;
+        }
+
+        final int startLane = mTailLaneInfo.startLane;
+        final int endLane = Math.min(mTailPositions.length,
+                startLane + Math.max(1, getLaneSpanForPosition(position)));
+        for (int lane = startLane; lane < endLane; lane++) {
+            if (mTailPositions[lane] != position) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the flags item decorations cache per position. They're dropped
+     * whenever the lanes of the positions change.
+     */
+    public DecorationIndex getDecorationIndex() {
+        return mDecorationIndex;
+    }
+
+    /**
+     * Sets the {@link SpanSizeLookup} used to resolve item spans by position
+     * without binding views. Pass null to read spans from the item layout
+     * params again.
+     */
+    public void setSpanSizeLookup(SpanSizeLookup spanSizeLookup) {
+        if (mSpanSizeLookup == spanSizeLookup) {
+            return;
+        }
+
+        mSpanSizeLookup = spanSizeLookup;
+
+        // Cached entries might have been created with different spans.
+        clearItemEntries();
+        requestMoveLayout();
+        requestLayout();
+    }
+
+    public SpanSizeLookup getSpanSizeLookup() {
+        return mSpanSizeLookup;
+    }
+
+    /**
+     * Limits the item entries persisted in the saved state to the given number
+     * of positions around the first visible one. Entries outside the window are
+     * recomputed after restore. Pass 0 (the default) to persist all of them.
+     */
+    public void setSavedItemEntriesWindow(int itemCount) {
+        if (itemCount < 0) {
+            throw new IllegalArgumentException("Saved item entries window can't be negative");
+        }
+
+        mSavedItemEntriesWindow = itemCount;
+    }
+
+    public int getSavedItemEntriesWindow() {
+        return mSavedItemEntriesWindow;
+    }
+
     protected void setItemEntryForPosition(int position, ItemEntry entry) {
         if (mItemEntries != null) {
             mItemEntries.putItemEntry(position, entry);
         }
     }
 
+    /**
+     * Returns a copy of the entry cached for the given position, or null if
+     * there is none. Prefer the position based accessors in layout passes.
+     */
     protected ItemEntry getItemEntryForPosition(int position) {
         return (mItemEntries != null ? mItemEntries.getItemEntry(position) : null);
     }
 
+    protected boolean hasItemEntryForPosition(int position) {
+        return (mItemEntries != null && mItemEntries.hasItemEntry(position));
+    }
+
+    protected void putItemEntryForPosition(int position, LaneInfo laneInfo, int span,
+                                           int width, int height) {
+        if (mItemEntries != null) {
+            mItemEntries.putItemEntry(position, laneInfo.startLane, laneInfo.anchorLane,
+                    span, width, height);
+        }
+    }
+
+    /**
+     * Sets the lane cached for the given position, or an undefined lane if
+     * there is no entry for it.
+     */
+    protected void getItemLaneForPosition(LaneInfo outInfo, int position) {
+        if (mItemEntries != null) {
+            mItemEntries.getLane(position, outInfo);
+        } else {
+            outInfo.setUndefined();
+        }
+    }
+
+    /**
+     * Same as {@link #getItemLaneForPosition(LaneInfo, int)} but when laying out
+     * towards the end, a cached lane that no longer fits the current lane edges
+     * (e.g. after a move reordered the items before it) is reported as undefined
+     * so that it gets recomputed.
+     */
+    protected void getItemLaneForPosition(LaneInfo outInfo, int position, Direction direction) {
+        if (mItemEntries != null) {
+            LaneReplay.getLane(mLanes, mItemEntries, position, direction, outInfo);
+        } else {
+            outInfo.setUndefined();
+        }
+    }
+
+    protected void setItemLaneForPosition(int position, LaneInfo laneInfo) {
+        if (mItemEntries != null) {
+            LaneReplay.setLane(mItemEntries, position, laneInfo, mLaneReplayCallback);
+        }
+    }
+
+    /**
+     * @return the lane span cached for the given position, 0 if there is no
+     *         entry for it.
+     */
+    protected int getItemSpanForPosition(int position) {
+        return (mItemEntries != null ? mItemEntries.getSpan(position) : 0);
+    }
+
+    protected int getItemWidthForPosition(int position) {
+        return (mItemEntries != null ? mItemEntries.getWidth(position) : 0);
+    }
+
+    protected int getItemHeightForPosition(int position) {
+        return (mItemEntries != null ? mItemEntries.getHeight(position) : 0);
+    }
+
+    /**
+     * Caches the size of the given position. If it changed, the lane
+     * checkpoints past it are dropped.
+     */
+    protected void setItemSizeForPosition(int position, int width, int height) {
+        if (mItemEntries != null) {
+            mLaneReplay.setSize(mItemEntries, position, width, height, mLaneReplayCallback);
+        }
+    }
+
     protected void clearItemEntries() {
         if (mItemEntries != null) {
             mItemEntries.clear();
         }
+
+        mLaneCheckpoints.clear();
+        clearDecorations();
     }
 
     protected void invalidateItemLanesAfter(int position) {
         if (mItemEntries != null) {
             mItemEntries.invalidateItemLanesAfter(position);
         }
+
+        mLaneCheckpoints.invalidateAfter(position);
+        invalidateDecorationsAfter(position);
+    }
+
+    /**
+     * Resets the lanes and replays the items up to the given position into
+     * them, resuming from the closest lane checkpoint. Items without an entry
+     * get one from {@link #createItemEntryForPosition(int, Recycler)}. The
+     * given position isn't pushed into the lanes, its lane and frame are left
+     * in outInfo and outFrame.
+     */
+    protected void replayItemEntries(int position, Recycler recycler, LaneInfo outInfo,
+                                     Rect outFrame) {
+        mReplayRecycler = recycler;
+        final int replayed = mLaneReplay.replay(mLanes, mItemEntries, position,
+                mLaneReplayCallback, outInfo, outFrame);
+        mReplayRecycler = null;
+
+        final LayoutMetrics metrics = getLayoutMetrics();
+        if (metrics != null) {
+            metrics.mItemsReplayed += replayed;
+        }
+    }
+
+    /**
+     * Creates the item entry of a position being replayed that doesn't have
+     * one yet, with its span and size. Its lane may be left undefined.
+     */
+    protected void createItemEntryForPosition(int position, Recycler recycler) {
+        throw new IllegalStateException("No item entry for position " + position);
     }
 
     protected void offsetForAddition(int positionStart, int itemCount) {
         if (mItemEntries != null) {
             mItemEntries.offsetForAddition(positionStart, itemCount);
         }
+
+        invalidateDecorationsAfter(positionStart);
     }
 
     protected void offsetForRemoval(int positionStart, int itemCount) {
         if (mItemEntries != null) {
             mItemEntries.offsetForRemoval(positionStart, itemCount);
         }
+
+        invalidateDecorationsAfter(positionStart);
+    }
+
+    /**
+     * Moves the entries in place and invalidates the lanes within the moved
+     * window only. Cached lanes after the window that no longer fit the lane
+     * edges are recomputed when they are laid out again, see
+     * {@link Lanes#fitsLaneSpan(LaneInfo, int)}.
+     */
+    protected void offsetForMove(int fromPosition, int toPosition, int itemCount) {
+        if (mItemEntries != null) {
+            mItemEntries.moveItemEntries(fromPosition, toPosition, itemCount);
+        }
+
+        mLaneCheckpoints.invalidateAfter(Math.min(fromPosition, toPosition));
+        invalidateDecorationsAfter(Math.min(fromPosition, toPosition));
     }
 
     private void requestMoveLayout() {
@@ -266,6 +517,7 @@ public abstract class BaseLayoutManager extends TwoWayLayoutManager {
         }
 
         final Lanes oldLanes = mLanes;
+        retireLanes(oldLanes);
         mLanes = new Lanes(this, laneCount);
 
         requestMoveLayout();
@@ -278,31 +530,36 @@ public abstract class BaseLayoutManager extends TwoWayLayoutManager {
                 oldLanes.getLaneSize() == mLanes.getLaneSize()) {
             invalidateItemLanesAfter(0);
         } else {
-            mItemEntries.clear();
+            clearItemEntries();
         }
 
         return true;
     }
 
-    private void handleUpdate(int positionStart, int itemCountOrToPosition, UpdateOp cmd) {
-        invalidateItemLanesAfter(positionStart);
+    private void handleUpdate(int positionStart, int itemCount, UpdateOp cmd) {
+        // The item entries are only updated once per layout pass, see
+        // applyPendingUpdates().
+        if (mPendingInvalidationStart == RecyclerView.NO_POSITION ||
+                positionStart < mPendingInvalidationStart) {
+            mPendingInvalidationStart = positionStart;
+        }
 
-        switch (cmd) {
-            case ADD:
-                offsetForAddition(positionStart, itemCountOrToPosition);
-                break;
+        if (cmd != UpdateOp.UPDATE) {
+            addPendingUpdate(cmd, positionStart, itemCount, RecyclerView.NO_POSITION);
+        }
 
-            case REMOVE:
-                offsetForRemoval(positionStart, itemCountOrToPosition);
-                break;
+        requestLayoutForUpdate(positionStart, positionStart + itemCount);
+    }
 
-            case MOVE:
-                offsetForRemoval(positionStart, 1);
-                offsetForAddition(itemCountOrToPosition, 1);
-                break;
-        }
+    private void handleMove(int from, int to, int itemCount) {
+        // Moves don't invalidate the lanes after the moved window, only the
+        // window itself when the update is applied.
+        addPendingUpdate(UpdateOp.MOVE, from, itemCount, to);
+        requestLayoutForUpdate(Math.min(from, to), Math.max(from, to) + itemCount);
+    }
 
-        if (positionStart + itemCountOrToPosition <= getFirstVisiblePosition()) {
+    private void requestLayoutForUpdate(int positionStart, int positionEnd) {
+        if (positionEnd <= getFirstVisiblePosition()) {
             return;
         }
 
@@ -311,6 +568,101 @@ public abstract class BaseLayoutManager extends TwoWayLayoutManager {
         }
     }
 
+    private void addPendingUpdate(UpdateOp cmd, int positionStart, int itemCount, int toPosition) {
+        if (mPendingUpdateCount > 0) {
+            final int last = (mPendingUpdateCount - 1) * 4;
+            final int lastStart = mPendingUpdates[last + 1];
+            final int lastCount = mPendingUpdates[last + 2];
+
+            if (mPendingUpdates[last] == cmd.ordinal()) {
+                // Insertions within or right after the previous inserted range.
+                if (cmd == UpdateOp.ADD && positionStart >= lastStart &&
+                        positionStart <= lastStart + lastCount) {
+                    mPendingUpdates[last + 2] = lastCount + itemCount;
+                    return;
+                }
+
+                // Removals overlapping or right before the previous removed range.
+                if (cmd == UpdateOp.REMOVE && positionStart <= lastStart &&
+                        positionStart + itemCount >= lastStart) {
+                    mPendingUpdates[last + 1] = positionStart;
+                    mPendingUpdates[last + 2] = lastCount + itemCount;
+                    return;
+                }
+            }
+        }
+
+        if (mPendingUpdates == null) {
+            mPendingUpdates = new int[4 * 4];
+        } else if (mPendingUpdateCount * 4 == mPendingUpdates.length) {
+            mPendingUpdates = Arrays.copyOf(mPendingUpdates, mPendingUpdates.length * 2);
+        }
+
+        final int index = mPendingUpdateCount * 4;
+        mPendingUpdates[index] = cmd.ordinal();
+        mPendingUpdates[index + 1] = positionStart;
+        mPendingUpdates[index + 2] = itemCount;
+        mPendingUpdates[index + 3] = toPosition;
+        mPendingUpdateCount++;
+    }
+
+    /**
+     * Whether adapter updates are waiting for the next layout pass, either
+     * in RecyclerView or in the queue applied by applyPendingUpdates().
+     */
+    private boolean hasPendingUpdates() {
+        return (mPendingInvalidationStart != RecyclerView.NO_POSITION ||
+                mPendingUpdateCount > 0 ||
+                (mRecyclerView != null && mRecyclerView.hasPendingAdapterUpdates()));
+    }
+
+    private void clearPendingUpdates() {
+        mPendingUpdateCount = 0;
+        mPendingInvalidationStart = RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * Applies the queued adapter updates to the item entries in one pass. Any
+     * update invalidates the lanes from its start position on, so a single
+     * invalidation from the lowest one covers the whole batch.
+     */
+    private void applyPendingUpdates() {
+        if (mPendingInvalidationStart == RecyclerView.NO_POSITION && mPendingUpdateCount == 0) {
+            return;
+        }
+
+        if (mPendingInvalidationStart != RecyclerView.NO_POSITION) {
+            invalidateItemLanesAfter(mPendingInvalidationStart);
+        }
+
+        if (mSpanSizeLookup != null) {
+            mSpanSizeLookup.invalidateCache();
+        }
+
+        final UpdateOp[] ops = UpdateOp.values();
+        for (int i = 0; i < mPendingUpdateCount; i++) {
+            final int index = i * 4;
+            final int positionStart = mPendingUpdates[index + 1];
+            final int itemCount = mPendingUpdates[index + 2];
+
+            switch (ops[mPendingUpdates[index]]) {
+                case ADD:
+                    offsetForAddition(positionStart, itemCount);
+                    break;
+
+                case REMOVE:
+                    offsetForRemoval(positionStart, itemCount);
+                    break;
+
+                case MOVE:
+                    offsetForMove(positionStart, mPendingUpdates[index + 3], itemCount);
+                    break;
+            }
+        }
+
+        clearPendingUpdates();
+    }
+
     @Override
     public void offsetChildrenHorizontal(int offset) {
         if (!isVertical()) {
@@ -331,13 +683,20 @@ public abstract class BaseLayoutManager extends TwoWayLayoutManager {
 
     @Override
     public void onLayoutChildren(Recycler recycler, State state) {
+        beginLayoutMetrics(LayoutMetrics.PASS_LAYOUT);
+        applyPendingUpdates();
+
         final boolean restoringLanes = (mLanesToRestore != null);
         if (restoringLanes) {
+            retireLanes(mLanes);
             mLanes = mLanesToRestore;
             mItemEntries = mItemEntriesToRestore;
 
             mLanesToRestore = null;
             mItemEntriesToRestore = null;
+
+            mLaneCheckpoints.clear();
+            clearDecorations();
         }
 
         final boolean refreshingLanes = ensureLayoutState();
@@ -345,6 +704,7 @@ public abstract class BaseLayoutManager extends TwoWayLayoutManager {
         // Still not able to create lanes, nothing we can do here,
         // just bail for now.
         if (mLanes == null) {
+            endLayoutMetrics();
             return;
         }
 
@@ -358,12 +718,31 @@ public abstract class BaseLayoutManager extends TwoWayLayoutManager {
 
         // Only move layout if we're not restoring a layout state.
         if (anchorItemPosition > 0 && (refreshingLanes || !restoringLanes)) {
+            final LayoutMetrics metrics = getLayoutMetrics();
+            final long startTime = (metrics != null ? System.nanoTime() : 0);
+
             moveLayoutToPosition(anchorItemPosition, getPendingScrollOffset(), recycler, state);
+
+            if (metrics != null) {
+                metrics.mReplayNanos += System.nanoTime() - startTime;
+            }
         }
 
         mLanes.reset(Direction.START);
 
         super.onLayoutChildren(recycler, state);
+        endLayoutMetrics();
+    }
+
+    private void retireLanes(Lanes lanes) {
+        if (lanes != null) {
+            mRetiredFindLaneCount += lanes.getFindLaneCount();
+        }
+    }
+
+    @Override
+    protected int getFindLaneCount() {
+        return mRetiredFindLaneCount + (mLanes != null ? mLanes.getFindLaneCount() : 0);
     }
 
     @Override
@@ -393,18 +772,26 @@ public abstract class BaseLayoutManager extends TwoWayLayoutManager {
 
     @Override
     public void onItemsMoved(RecyclerView recyclerView, int from, int to, int itemCount) {
-        handleUpdate(from, to, UpdateOp.MOVE);
+        handleMove(from, to, itemCount);
         super.onItemsMoved(recyclerView, from, to, itemCount);
     }
 
     @Override
     public void onItemsChanged(RecyclerView recyclerView) {
+        clearPendingUpdates();
         clearItemEntries();
+
+        if (mSpanSizeLookup != null) {
+            mSpanSizeLookup.invalidateCache();
+        }
+
         super.onItemsChanged(recyclerView);
     }
 
     @Override
     public Parcelable onSaveInstanceState() {
+        applyPendingUpdates();
+
         final Parcelable superState = super.onSaveInstanceState();
         final LanedSavedState state = new LanedSavedState(superState);
 
@@ -420,6 +807,17 @@ public abstract class BaseLayoutManager extends TwoWayLayoutManager {
         state.laneSize = (mLanes != null ? mLanes.getLaneSize() : 0);
         state.itemEntries = mItemEntries;
 
+        if (mItemEntries != null) {
+            if (mSavedItemEntriesWindow > 0) {
+                final int anchorPosition = Math.max(0, getFirstVisiblePosition());
+                state.itemEntriesStart = anchorPosition - mSavedItemEntriesWindow;
+                state.itemEntriesEnd = anchorPosition + mSavedItemEntriesWindow + 1;
+            } else {
+                state.itemEntriesStart = 0;
+                state.itemEntriesEnd = mItemEntries.size();
+            }
+        }
+
         return state;
     }
 
@@ -428,7 +826,7 @@ public abstract class BaseLayoutManager extends TwoWayLayoutManager {
         final LanedSavedState ss = (LanedSavedState) state;
 
         if (ss.lanes != null && ss.laneSize > 0) {
-            mLanesToRestore = new Lanes(this, ss.orientation, ss.lanes, ss.laneSize);
+            mLanesToRestore = new Lanes(ss.orientation, ss.lanes, ss.laneSize);
             mItemEntriesToRestore = ss.itemEntries;
         }
 
@@ -469,6 +867,16 @@ public abstract class BaseLayoutManager extends TwoWayLayoutManager {
     @Override
     protected void measureChild(View child, Direction direction) {
         cacheChildLaneAndSpan(child, direction);
+
+        // The lane of the last item is cached by now, resolve the tail before
+        // its decorations ask for it. Lanes are still being rebuilt while
+        // replaying, the tail is resolved when the item is laid out.
+        final int itemCount = getItemCount();
+        if (mReplayRecycler == null && !mTailPositionsKnown &&
+                getPosition(child) == itemCount - 1) {
+            updateTailPositions(itemCount);
+        }
+
         measureChildWithMargins(child);
     }
 
@@ -479,7 +887,7 @@ public abstract class BaseLayoutManager extends TwoWayLayoutManager {
 
         mLanes.getChildFrame(mChildFrame, getDecoratedMeasuredWidth(child),
                 getDecoratedMeasuredHeight(child), mTempLaneInfo, direction);
-        final ItemEntry entry = cacheChildFrame(child, mChildFrame);
+        cacheChildFrame(child, mChildFrame);
 
         layoutDecorated(child, mChildFrame.left, mChildFrame.top, mChildFrame.right,
                 mChildFrame.bottom);
@@ -487,8 +895,14 @@ public abstract class BaseLayoutManager extends TwoWayLayoutManager {
 
         final LayoutParams lp = (LayoutParams) child.getLayoutParams();
         if (!lp.isItemRemoved()) {
-            pushChildFrame(entry, mChildFrame, mTempLaneInfo.startLane,
+            final int position = getPosition(child);
+            pushChildFrame(position, mChildFrame, mTempLaneInfo.startLane,
                     getLaneSpanForChild(child), direction);
+
+            final int itemCount = getItemCount();
+            if (position == itemCount - 1) {
+                updateTailPositions(itemCount);
+            }
         }
     }
 
@@ -498,7 +912,7 @@ public abstract class BaseLayoutManager extends TwoWayLayoutManager {
         getLaneForPosition(mTempLaneInfo, position, direction);
         getDecoratedChildFrame(child, mChildFrame);
 
-        popChildFrame(getItemEntryForPosition(position), mChildFrame, mTempLaneInfo.startLane,
+        popChildFrame(position, mChildFrame, mTempLaneInfo.startLane,
                 getLaneSpanForChild(child), direction);
     }
 
@@ -514,14 +928,12 @@ public abstract class BaseLayoutManager extends TwoWayLayoutManager {
         return 1;
     }
 
-    protected ItemEntry cacheChildLaneAndSpan(View child, Direction direction) {
+    protected void cacheChildLaneAndSpan(View child, Direction direction) {
         // Do nothing by default.
-        return null;
     }
 
-    protected ItemEntry cacheChildFrame(View child, Rect childFrame) {
+    protected void cacheChildFrame(View child, Rect childFrame) {
         // Do nothing by default.
-        return null;
     }
     
     // add by zhousuqiang
@@ -584,12 +996,64 @@ public abstract class BaseLayoutManager extends TwoWayLayoutManager {
     public LayoutParams generateLayoutParams(Context c, AttributeSet attrs) {
         return new LayoutParams(c, attrs);
     }
-    
-    
-    
-    
-    
-    
+
+    /**
+     * Moves along the scroll axis to the nearest position covering the first
+     * lane of the given one. Positions are laid out in order, so that's the
+     * item right after (or before) it in the same lane.
+     */
+    @Override
+    public int findNextFocusPosition(int position, int focusDirection) {
+        final Direction direction = getFocusScrollDirection(focusDirection);
+        final int laneCount = getLaneCount();
+        if (direction == null || laneCount == 0) {
+            return RecyclerView.NO_POSITION;
+        }
+
+        // The item entries are still indexed by the positions of the last
+        // layout until the adapter updates are applied on the next one.
+        if (hasPendingUpdates()) {
+            return RecyclerView.NO_POSITION;
+        }
+
+        getLaneForPosition(mTempLaneInfo, position, Direction.END);
+        if (mTempLaneInfo.isUndefined()) {
+            return RecyclerView.NO_POSITION;
+        }
+
+        final int lane = mTempLaneInfo.startLane;
+        final int itemCount = getItemCount();
+        final int step = (direction == Direction.END ? 1 : -1);
+
+        // Give up on rows taken by items spanning several lanes and rows.
+        final int maxDistance = laneCount * MAX_FOCUS_SEARCH_ROWS;
+        for (int i = 1; i <= maxDistance; i++) {
+            final int candidate = position + i * step;
+            if (candidate < 0 || candidate >= itemCount) {
+                break;
+            }
+
+            getLaneForPosition(mTempLaneInfo, candidate, Direction.END);
+            if (mTempLaneInfo.isUndefined()) {
+                // Not laid out yet.
+                break;
+            }
+
+            final int startLane = mTempLaneInfo.startLane;
+            final int span = Math.max(1, getItemSpanForPosition(candidate));
+            if (lane >= startLane && lane < startLane + span) {
+                return candidate;
+            }
+        }
+
+        return RecyclerView.NO_POSITION;
+    }
+
+    @Override
+    protected int getPrefetchPositionCount() {
+        // Prefetch whole rows (or columns) of lanes.
+        return super.getPrefetchPositionCount() * Math.max(1, getLaneCount());
+    }
 
     public abstract int getLaneCount();
     public abstract void getLaneForPosition(LaneInfo outInfo, int position, Direction direction);
@@ -600,6 +1064,8 @@ public abstract class BaseLayoutManager extends TwoWayLayoutManager {
         private Rect[] lanes;
         private int laneSize;
         private ItemEntries itemEntries;
+        private int itemEntriesStart;
+        private int itemEntriesEnd;
 
         protected LanedSavedState(Parcelable superState) {
             super(superState);
@@ -621,14 +1087,7 @@ public abstract class BaseLayoutManager extends TwoWayLayoutManager {
                 }
             }
 
-            final int itemEntriesCount = in.readInt();
-            if (itemEntriesCount > 0) {
-                itemEntries = new ItemEntries();
-                for (int i = 0; i < itemEntriesCount; i++) {
-                    final ItemEntry entry = in.readParcelable(getClass().getClassLoader());
-                    itemEntries.restoreItemEntry(i, entry);
-                }
-            }
+            itemEntries = ItemEntriesCodec.decode(in.createByteArray());
         }
 
         @Override
@@ -645,11 +1104,11 @@ public abstract class BaseLayoutManager extends TwoWayLayoutManager {
                 lanes[i].writeToParcel(out, Rect.PARCELABLE_WRITE_RETURN_VALUE);
             }
 
-            final int itemEntriesCount = (itemEntries != null ? itemEntries.size() : 0);
-            out.writeInt(itemEntriesCount);
-
-            for (int i = 0; i < itemEntriesCount; i++) {
-                out.writeParcelable(itemEntries.getItemEntry(i), flags);
+            if (itemEntries != null && itemEntries.size() > 0) {
+                out.writeByteArray(ItemEntriesCodec.encode(itemEntries, itemEntriesStart,
+                        itemEntriesEnd));
+            } else {
+                out.writeByteArray(null);
             }
         }
 
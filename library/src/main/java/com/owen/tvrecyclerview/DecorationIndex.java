@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2014 Lucas Rocha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.owen.tvrecyclerview;
+
+import java.util.Arrays;
+
+/**
+ * Per position flags computed by item decorations, e.g. whether an item sits
+ * in the first row of the layout. They're kept by the layout manager so that
+ * decorations don't have to walk the earlier positions for every child on
+ * every layout pass, and are invalidated along with the cached item lanes.
+ *
+ * Like the lanes in {@link ItemEntries}, flags before a watermark position
+ * stay valid while the ones after it are only valid if they were set since
+ * the last invalidation.
+ */
+public final class DecorationIndex {
+    public static final int FLAG_FIRST_ROW = 1;
+    public static final int FLAG_SECOND_LANE = 1 << 1;
+
+    public static final int UNKNOWN = -1;
+
+    private static final int MIN_SIZE = 10;
+
+    // Each flag has a matching bit telling whether it was computed.
+    private static final int KNOWN_SHIFT = 16;
+
+    private int[] mFlags;
+    private int[] mStamps;
+
+    private int mWatermark = Integer.MAX_VALUE;
+    private int mGeneration;
+
+    private void ensureSize(int position) {
+        if (mFlags == null) {
+            final int size = Math.max(position + 1, MIN_SIZE);
+            mFlags = new int[size];
+            mStamps = new int[size];
+            Arrays.fill(mStamps, mGeneration);
+        } else if (position >= mFlags.length) {
+            final int oldSize = mFlags.length;
+            final int size = Math.max(position + 1, oldSize * 2);
+            mFlags = Arrays.copyOf(mFlags, size);
+            mStamps = Arrays.copyOf(mStamps, size);
+            Arrays.fill(mStamps, oldSize, size, mGeneration);
+        }
+    }
+
+    private boolean isValid(int position) {
+        return (position < mWatermark || mStamps[position] == mGeneration);
+    }
+
+    /**
+     * Returns 1 if the given flag is set for the position, 0 if it isn't or
+     * {@link #UNKNOWN} if it wasn't computed since the last invalidation.
+     */
+    public int getFlag(int position, int flag) {
+        if (mFlags == null || position < 0 || position >= mFlags.length || !isValid(position)) {
+            return UNKNOWN;
+        }
+
+        final int flags = mFlags[position];
+        if ((flags & (flag << KNOWN_SHIFT)) == 0) {
+            return UNKNOWN;
+        }
+
+        return ((flags & flag) != 0 ? 1 : 0);
+    }
+
+    public void setFlag(int position, int flag, boolean value) {
+        if (position < 0) {
+            return;
+        }
+
+        ensureSize(position);
+
+        int flags = (isValid(position) ? mFlags[position] : 0);
+        flags |= (flag << KNOWN_SHIFT);
+        flags = (value ? flags | flag : flags & ~flag);
+        mFlags[position] = flags;
+
+        mStamps[position] = mGeneration;
+        if (position == mWatermark) {
+            int watermark = position + 1;
+            while (watermark < mFlags.length && mStamps[watermark] == mGeneration) {
+                watermark++;
+            }
+
+            mWatermark = watermark;
+        }
+    }
+
+    /**
+     * Drops the flags of every position at or after the given one.
+     */
+    public void invalidateAfter(int position) {
+        mWatermark = Math.min(mWatermark, Math.max(0, position));
+        mGeneration++;
+    }
+
+    public void clear() {
+        mFlags = null;
+        mStamps = null;
+        mWatermark = Integer.MAX_VALUE;
+    }
+}
@@ -22,18 +22,60 @@
 package com.owen.tvrecyclerview;
 
 import com.owen.tvrecyclerview.BaseLayoutManager.ItemEntry;
+import com.owen.tvrecyclerview.Lanes.LaneInfo;
 
 import java.util.Arrays;
 
+/**
+ * Per-position item entries stored as parallel primitive columns instead of
+ * one object per item. A position has an entry when its span is greater than
+ * zero. Width and height hold the cached item frame size, span margins are
+ * only kept for multi-lane items in a sparse table sorted by position.
+ *
+ * Lanes are invalidated lazily: positions before the lane watermark are
+ * valid, positions at or after it are only valid if their lane was set
+ * since the last invalidation, which is tracked with a generation stamp.
+ * Invalidating never walks the entries, it lowers the watermark and bumps
+ * the generation. The watermark moves forward again as lanes are set in
+ * order. A range of lanes can also be invalidated on its own (e.g. after a
+ * move) by stamping its entries as invalid. Span margins of an entry whose
+ * lane is invalid are ignored and dropped once its lane is set again.
+ *
+ * The columns are laid out as a gap buffer: the unused capacity sits at the
+ * position of the last insertion or removal, so consecutive edits around the
+ * same position (e.g. a feed inserting at the head) only move the entries
+ * between the gap and the edit instead of the whole tail.
+ */
 public class ItemEntries {
     private static final int MIN_SIZE = 10;
+    private static final int INVALID_LANE_STAMP = Integer.MIN_VALUE;
+
+    private int[] mStartLanes;
+    private int[] mAnchorLanes;
+    private int[] mSpans;
+    private int[] mWidths;
+    private int[] mHeights;
+    private int[] mLaneStamps;
+
+    private int mLength;
+    private int mGapStart;
+    private int mGapLength;
+
+    private int mLaneWatermark = Integer.MAX_VALUE;
+    private int mLaneGeneration;
+
+    private int[] mMarginPositions;
+    private int[][] mMargins;
+    private int mMarginCount;
 
-    private ItemEntry[] mItemEntries;
     private int mAdapterSize;
     private boolean mRestoringItem;
 
+    public ItemEntries() {
+    }
+
     private int sizeForPosition(int position) {
-        int len = mItemEntries.length;
+        int len = Math.max(mLength, MIN_SIZE);
         while (len <= position) {
             len *= 2;
         }
@@ -41,35 +83,155 @@ public class ItemEntries {
         // We don't apply any constraints while restoring
         // item entries.
         if (!mRestoringItem && len > mAdapterSize) {
-            len = mAdapterSize;
+            len = Math.max(mAdapterSize, position + 1);
         }
 
         return len;
     }
 
+    /**
+     * Maps a position to its index in the columns, skipping the gap.
+     */
+    private int index(int position) {
+        return (position < mGapStart ? position : position + mGapLength);
+    }
+
+    private void copyColumns(int from, int to, int count) {
+        System.arraycopy(mStartLanes, from, mStartLanes, to, count);
+        System.arraycopy(mAnchorLanes, from, mAnchorLanes, to, count);
+        System.arraycopy(mSpans, from, mSpans, to, count);
+        System.arraycopy(mWidths, from, mWidths, to, count);
+        System.arraycopy(mHeights, from, mHeights, to, count);
+        System.arraycopy(mLaneStamps, from, mLaneStamps, to, count);
+    }
+
+    private void moveGap(int position) {
+        if (position < mGapStart) {
+            copyColumns(position, position + mGapLength, mGapStart - position);
+        } else if (position > mGapStart) {
+            copyColumns(mGapStart + mGapLength, mGapStart, position - mGapStart);
+        }
+
+        mGapStart = position;
+    }
+
+    /**
+     * Reallocates the columns to hold the given number of positions plus a gap
+     * of the given length. New positions are appended with no entry.
+     */
+    private void reallocate(int length, int gapLength) {
+        final int capacity = length + gapLength;
+        final int tailCount = mLength - mGapStart;
+
+        mStartLanes = reallocate(mStartLanes, capacity, tailCount, gapLength);
+        mAnchorLanes = reallocate(mAnchorLanes, capacity, tailCount, gapLength);
+        mSpans = reallocate(mSpans, capacity, tailCount, gapLength);
+        mWidths = reallocate(mWidths, capacity, tailCount, gapLength);
+        mHeights = reallocate(mHeights, capacity, tailCount, gapLength);
+        mLaneStamps = reallocate(mLaneStamps, capacity, tailCount, gapLength);
+
+        mLength = length;
+        mGapLength = gapLength;
+    }
+
+    private int[] reallocate(int[] column, int capacity, int tailCount, int gapLength) {
+        final int[] newColumn = new int[capacity];
+        if (column != null) {
+            System.arraycopy(column, 0, newColumn, 0, mGapStart);
+            System.arraycopy(column, mGapStart + mGapLength, newColumn, mGapStart + gapLength,
+                    tailCount);
+        }
+
+        return newColumn;
+    }
+
     private void ensureSize(int position) {
-        if (mItemEntries == null) {
-            mItemEntries = new ItemEntry[Math.max(position, MIN_SIZE) + 1];
-            Arrays.fill(mItemEntries, null);
-        } else if (position >= mItemEntries.length) {
-            ItemEntry[] oldItemEntries = mItemEntries;
-            mItemEntries = new ItemEntry[sizeForPosition(position)];
-            System.arraycopy(oldItemEntries, 0, mItemEntries, 0, oldItemEntries.length);
-            Arrays.fill(mItemEntries, oldItemEntries.length, mItemEntries.length, null);
+        if (mSpans == null) {
+            reallocate(Math.max(position, MIN_SIZE) + 1, 0);
+        } else if (position >= mLength) {
+            reallocate(sizeForPosition(position), mGapLength);
+        }
+    }
+
+    public boolean hasItemEntry(int position) {
+        return (position >= 0 && position < mLength && mSpans[index(position)] > 0);
+    }
+
+    private boolean isLaneValid(int position) {
+        final int stamp = mLaneStamps[index(position)];
+        return (stamp != INVALID_LANE_STAMP &&
+                (position < mLaneWatermark || stamp == mLaneGeneration));
+    }
+
+    private void validateLane(int position) {
+        mLaneStamps[index(position)] = mLaneGeneration;
+
+        if (position == mLaneWatermark) {
+            int watermark = position + 1;
+            while (watermark < mLength) {
+                final int i = index(watermark);
+                if (mSpans[i] > 0 && mLaneStamps[i] != mLaneGeneration) {
+                    break;
+                }
+
+                watermark++;
+            }
+
+            mLaneWatermark = watermark;
         }
     }
 
+    /**
+     * Returns a copy of the entry at the given position, or null if there is
+     * none. Changes to the returned entry are not reflected in this table.
+     */
     public ItemEntry getItemEntry(int position) {
-        if (mItemEntries == null || position >= mItemEntries.length) {
+        if (!hasItemEntry(position)) {
             return null;
         }
 
-        return mItemEntries[position];
+        final int i = index(position);
+        final boolean laneValid = isLaneValid(position);
+        final ItemEntry entry = new ItemEntry(
+                laneValid ? mStartLanes[i] : Lanes.NO_LANE,
+                laneValid ? mAnchorLanes[i] : Lanes.NO_LANE,
+                mSpans[i], mWidths[i], mHeights[i]);
+
+        final int marginIndex = (laneValid ? findMarginIndex(position) : -1);
+        if (marginIndex >= 0) {
+            entry.spanMargins = mMargins[marginIndex].clone();
+        }
+
+        return entry;
     }
 
     public void putItemEntry(int position, ItemEntry entry) {
+        if (entry == null) {
+            removeItemEntry(position);
+            return;
+        }
+
+        putItemEntry(position, entry.startLane, entry.anchorLane, entry.span,
+                entry.width, entry.height);
+
+        if (entry.spanMargins != null) {
+            putSpanMargins(position, entry.spanMargins.clone());
+        }
+    }
+
+    public void putItemEntry(int position, int startLane, int anchorLane, int span,
+                             int width, int height) {
         ensureSize(position);
-        mItemEntries[position] = entry;
+
+        final int i = index(position);
+        mStartLanes[i] = startLane;
+        mAnchorLanes[i] = anchorLane;
+        mSpans[i] = Math.max(1, span);
+        mWidths[i] = width;
+        mHeights[i] = height;
+
+        removeSpanMargins(position);
+        validateLane(position);
     }
 
     public void restoreItemEntry(int position, ItemEntry entry) {
@@ -78,8 +240,205 @@ public class ItemEntries {
         mRestoringItem = false;
     }
 
+    void restoreItemEntry(int position, int startLane, int anchorLane, int span,
+                          int width, int height) {
+        mRestoringItem = true;
+        putItemEntry(position, startLane, anchorLane, span, width, height);
+        mRestoringItem = false;
+    }
+
+    void restoreSpanMargins(int position, int[] margins) {
+        if (hasItemEntry(position)) {
+            putSpanMargins(position, margins);
+        }
+    }
+
+    void restoreSize(int size) {
+        mRestoringItem = true;
+        ensureSize(size - 1);
+        mRestoringItem = false;
+    }
+
+    private void removeItemEntry(int position) {
+        if (hasItemEntry(position)) {
+            mSpans[index(position)] = 0;
+            removeSpanMargins(position);
+        }
+    }
+
+    public void getLane(int position, LaneInfo outInfo) {
+        if (hasItemEntry(position) && isLaneValid(position)) {
+            final int i = index(position);
+            outInfo.set(mStartLanes[i], mAnchorLanes[i]);
+        } else {
+            outInfo.setUndefined();
+        }
+    }
+
+    int getStartLane(int position) {
+        return (hasItemEntry(position) && isLaneValid(position) ?
+                mStartLanes[index(position)] : Lanes.NO_LANE);
+    }
+
+    int getAnchorLane(int position) {
+        return (hasItemEntry(position) && isLaneValid(position) ?
+                mAnchorLanes[index(position)] : Lanes.NO_LANE);
+    }
+
+    public void setLane(int position, LaneInfo laneInfo) {
+        if (!hasItemEntry(position)) {
+            return;
+        }
+
+        // Margins recorded before the lane was invalidated are stale.
+        if (!isLaneValid(position)) {
+            removeSpanMargins(position);
+        }
+
+        final int i = index(position);
+        mStartLanes[i] = laneInfo.startLane;
+        mAnchorLanes[i] = laneInfo.anchorLane;
+        validateLane(position);
+    }
+
+    /**
+     * Returns the lane span of the entry at the given position, 0 if there
+     * is no entry.
+     */
+    public int getSpan(int position) {
+        return (hasItemEntry(position) ? mSpans[index(position)] : 0);
+    }
+
+    public int getWidth(int position) {
+        return (hasItemEntry(position) ? mWidths[index(position)] : 0);
+    }
+
+    public int getHeight(int position) {
+        return (hasItemEntry(position) ? mHeights[index(position)] : 0);
+    }
+
+    public void setSize(int position, int width, int height) {
+        if (hasItemEntry(position)) {
+            final int i = index(position);
+            mWidths[i] = width;
+            mHeights[i] = height;
+        }
+    }
+
+    private int findMarginIndex(int position) {
+        if (mMarginCount == 0) {
+            return -1;
+        }
+
+        return Arrays.binarySearch(mMarginPositions, 0, mMarginCount, position);
+    }
+
+    public boolean hasSpanMargins(int position) {
+        return (hasItemEntry(position) && isLaneValid(position) &&
+                findMarginIndex(position) >= 0);
+    }
+
+    public int getSpanMargin(int position, int index) {
+        if (!hasItemEntry(position) || !isLaneValid(position)) {
+            return 0;
+        }
+
+        final int marginIndex = findMarginIndex(position);
+        if (marginIndex < 0) {
+            return 0;
+        }
+
+        return mMargins[marginIndex][index];
+    }
+
+    public void setSpanMargin(int position, int index, int margin, int span) {
+        if (!hasItemEntry(position) || !isLaneValid(position)) {
+            return;
+        }
+
+        int marginIndex = findMarginIndex(position);
+        if (marginIndex < 0) {
+            marginIndex = putSpanMargins(position, new int[span]);
+        }
+
+        mMargins[marginIndex][index] = margin;
+    }
+
+    private int putSpanMargins(int position, int[] margins) {
+        int marginIndex = findMarginIndex(position);
+        if (marginIndex >= 0) {
+            mMargins[marginIndex] = margins;
+            return marginIndex;
+        }
+
+        marginIndex = (mMarginCount == 0 ? 0 : -(marginIndex + 1));
+
+        if (mMarginPositions == null) {
+            mMarginPositions = new int[MIN_SIZE];
+            mMargins = new int[MIN_SIZE][];
+        } else if (mMarginCount == mMarginPositions.length) {
+            mMarginPositions = Arrays.copyOf(mMarginPositions, mMarginCount * 2);
+            mMargins = Arrays.copyOf(mMargins, mMarginCount * 2);
+        }
+
+        final int moveCount = mMarginCount - marginIndex;
+        System.arraycopy(mMarginPositions, marginIndex, mMarginPositions, marginIndex + 1, moveCount);
+        System.arraycopy(mMargins, marginIndex, mMargins, marginIndex + 1, moveCount);
+
+        mMarginPositions[marginIndex] = position;
+        mMargins[marginIndex] = margins;
+        mMarginCount++;
+
+        return marginIndex;
+    }
+
+    private void removeSpanMargins(int position) {
+        final int marginIndex = findMarginIndex(position);
+        if (marginIndex >= 0) {
+            removeSpanMarginsAt(marginIndex, 1);
+        }
+    }
+
+    private void removeSpanMarginsAt(int marginIndex, int count) {
+        if (count == 0) {
+            return;
+        }
+
+        final int moveCount = mMarginCount - marginIndex - count;
+        System.arraycopy(mMarginPositions, marginIndex + count, mMarginPositions, marginIndex, moveCount);
+        System.arraycopy(mMargins, marginIndex + count, mMargins, marginIndex, moveCount);
+
+        mMarginCount -= count;
+        Arrays.fill(mMargins, mMarginCount, mMarginCount + count, null);
+    }
+
+    int getSpanMarginsCount() {
+        return mMarginCount;
+    }
+
+    int getSpanMarginsPosition(int marginIndex) {
+        return mMarginPositions[marginIndex];
+    }
+
+    int[] getSpanMarginsAt(int marginIndex) {
+        return mMargins[marginIndex];
+    }
+
+    /**
+     * Returns the index of the first span margins stored for a position
+     * equal or greater than the given one.
+     */
+    private int firstMarginIndexFrom(int position) {
+        final int marginIndex = findMarginIndex(position);
+        if (marginIndex >= 0) {
+            return marginIndex;
+        }
+
+        return (mMarginCount == 0 ? 0 : -(marginIndex + 1));
+    }
+
     public int size() {
-        return (mItemEntries != null ? mItemEntries.length : 0);
+        return mLength;
     }
 
     public void setAdapterSize(int adapterSize) {
@@ -87,45 +446,173 @@ public class ItemEntries {
     }
 
     public void invalidateItemLanesAfter(int position) {
-        if (mItemEntries == null || position >= mItemEntries.length) {
+        if (position >= mLength) {
             return;
         }
 
-        for (int i = position; i < mItemEntries.length; i++) {
-            final ItemEntry entry = mItemEntries[i];
-            if (entry != null) {
-                entry.invalidateLane();
-            }
+        // Lanes set at or after the current watermark since the previous
+        // invalidation are dropped too, they get recomputed with the rest.
+        mLaneWatermark = Math.min(mLaneWatermark, Math.max(0, position));
+
+        mLaneGeneration++;
+        if (mLaneGeneration == INVALID_LANE_STAMP) {
+            mLaneGeneration++;
+        }
+    }
+
+    /**
+     * Invalidates the lanes of the positions in [positionStart, positionEnd)
+     * only, the lanes after the range keep their cached placement.
+     */
+    public void invalidateItemLanes(int positionStart, int positionEnd) {
+        positionEnd = Math.min(positionEnd, mLength);
+        for (int position = Math.max(0, positionStart); position < positionEnd; position++) {
+            mLaneStamps[index(position)] = INVALID_LANE_STAMP;
         }
     }
 
     public void clear() {
-        if (mItemEntries != null) {
-            Arrays.fill(mItemEntries, null);
+        if (mSpans != null) {
+            Arrays.fill(mSpans, 0);
+        }
+
+        if (mMargins != null) {
+            Arrays.fill(mMargins, null);
+        }
+
+        mMarginCount = 0;
+        mLaneWatermark = Integer.MAX_VALUE;
+    }
+
+    private void reverseColumns(int from, int to) {
+        reverse(mStartLanes, from, to);
+        reverse(mAnchorLanes, from, to);
+        reverse(mSpans, from, to);
+        reverse(mWidths, from, to);
+        reverse(mHeights, from, to);
+        reverse(mLaneStamps, from, to);
+    }
+
+    private static void reverse(int[] column, int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            final int value = column[i];
+            column[i] = column[j];
+            column[j] = value;
         }
     }
 
+    private static void reverse(Object[] column, int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            final Object value = column[i];
+            column[i] = column[j];
+            column[j] = value;
+        }
+    }
+
+    /**
+     * Moves the entries in [fromPosition, fromPosition + itemCount) so that they
+     * start at toPosition, shifting the entries in between. The entries are
+     * rotated in place and the lanes are only invalidated within the moved
+     * window, see {@link #invalidateItemLanes(int, int)}. Moves reaching past
+     * the end of the table drop the moved entries instead.
+     */
+    void moveItemEntries(int fromPosition, int toPosition, int itemCount) {
+        if (fromPosition == toPosition || itemCount <= 0) {
+            return;
+        }
+
+        final int windowStart = Math.min(fromPosition, toPosition);
+        final int windowEnd = Math.max(fromPosition, toPosition) + itemCount;
+
+        // The window runs past the table, so the entries can't be rotated into
+        // place. Apply the move as a removal plus an insertion instead, which
+        // drops the moved entries.
+        if (windowEnd > mLength) {
+            offsetForRemoval(fromPosition, itemCount);
+            offsetForAddition(toPosition, itemCount);
+            invalidateItemLanes(windowStart, mLength);
+            return;
+        }
+
+        if (windowEnd - windowStart <= 1) {
+            return;
+        }
+
+        // Entries in the window end up rotated left by this amount.
+        final int windowLength = windowEnd - windowStart;
+        final int shift = (fromPosition < toPosition ?
+                Math.min(itemCount, windowLength) : windowLength - Math.min(itemCount, windowLength));
+
+        // Make the window contiguous in the columns.
+        moveGap(windowStart);
+        final int from = index(windowStart);
+        final int to = from + windowLength;
+        reverseColumns(from, from + shift);
+        reverseColumns(from + shift, to);
+        reverseColumns(from, to);
+
+        final int firstIndex = firstMarginIndexFrom(windowStart);
+        final int endIndex = firstMarginIndexFrom(windowEnd);
+        final int splitIndex = firstMarginIndexFrom(windowStart + shift);
+        for (int i = firstIndex; i < endIndex; i++) {
+            final int position = mMarginPositions[i];
+            mMarginPositions[i] = (i < splitIndex ?
+                    position + windowLength - shift : position - shift);
+        }
+
+        // The margins moved to the start of the window were sorted after the
+        // others, rotate them back in order.
+        if (splitIndex > firstIndex && splitIndex < endIndex) {
+            reverse(mMarginPositions, firstIndex, splitIndex);
+            reverse(mMarginPositions, splitIndex, endIndex);
+            reverse(mMarginPositions, firstIndex, endIndex);
+            reverse(mMargins, firstIndex, splitIndex);
+            reverse(mMargins, splitIndex, endIndex);
+            reverse(mMargins, firstIndex, endIndex);
+        }
+
+        invalidateItemLanes(windowStart, windowEnd);
+    }
+
     void offsetForRemoval(int positionStart, int itemCount) {
-        if (mItemEntries == null || positionStart >= mItemEntries.length) {
+        if (positionStart >= mLength) {
             return;
         }
 
-        ensureSize(positionStart + itemCount);
+        itemCount = Math.min(itemCount, mLength - positionStart);
+
+        // The removed entries are simply absorbed by the gap.
+        moveGap(positionStart);
+        mGapLength += itemCount;
+        mLength -= itemCount;
+
+        final int removedIndex = firstMarginIndexFrom(positionStart);
+        final int keptIndex = firstMarginIndexFrom(positionStart + itemCount);
+        removeSpanMarginsAt(removedIndex, keptIndex - removedIndex);
 
-        System.arraycopy(mItemEntries, positionStart + itemCount, mItemEntries, positionStart,
-                mItemEntries.length - positionStart - itemCount);
-        Arrays.fill(mItemEntries, mItemEntries.length - itemCount, mItemEntries.length, null);
+        for (int i = removedIndex; i < mMarginCount; i++) {
+            mMarginPositions[i] -= itemCount;
+        }
     }
 
     void offsetForAddition(int positionStart, int itemCount) {
-        if (mItemEntries == null || positionStart >= mItemEntries.length) {
+        if (positionStart >= mLength) {
             return;
         }
 
-        ensureSize(positionStart + itemCount);
+        if (mGapLength < itemCount) {
+            reallocate(mLength, Math.max(itemCount, Math.max(MIN_SIZE, mLength / 2)));
+        }
+
+        moveGap(positionStart);
+        Arrays.fill(mSpans, positionStart, positionStart + itemCount, 0);
 
-        System.arraycopy(mItemEntries, positionStart, mItemEntries, positionStart + itemCount,
-                mItemEntries.length - positionStart - itemCount);
-        Arrays.fill(mItemEntries, positionStart, positionStart + itemCount, null);
+        mGapStart += itemCount;
+        mGapLength -= itemCount;
+        mLength += itemCount;
+
+        for (int i = firstMarginIndexFrom(positionStart); i < mMarginCount; i++) {
+            mMarginPositions[i] += itemCount;
+        }
     }
 }
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2014 Lucas Rocha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.owen.tvrecyclerview;
+
+import java.util.Arrays;
+
+/**
+ * Compact binary encoding of {@link ItemEntries} used by the saved state.
+ *
+ * The entries are written column by column as varints: the span of every
+ * position in the saved window (0 when there is no entry), then for the
+ * positions with an entry the start lane as a delta from the previous one,
+ * the anchor lane relative to the start lane and the width and height as
+ * deltas from the previous item. Signed values are zigzag encoded so that
+ * the common cases (same lane, same size) take a single byte.
+ */
+public final class ItemEntriesCodec {
+    static final int VERSION = 1;
+
+    private ItemEntriesCodec() {
+    }
+
+    /**
+     * Encodes every entry in the given table.
+     */
+    public static byte[] encode(ItemEntries itemEntries) {
+        return encode(itemEntries, 0, itemEntries.size());
+    }
+
+    /**
+     * Encodes the entries for positions in [windowStart, windowEnd). Entries
+     * outside the window are dropped and will be recomputed after restore.
+     */
+    public static byte[] encode(ItemEntries itemEntries, int windowStart, int windowEnd) {
+        final int size = itemEntries.size();
+        windowStart = Math.max(0, Math.min(windowStart, size));
+        windowEnd = Math.max(windowStart, Math.min(windowEnd, size));
+
+        final Writer out = new Writer(16 + (windowEnd - windowStart) * 3);
+        out.writeVarint(VERSION);
+        out.writeVarint(size);
+        out.writeVarint(windowStart);
+        out.writeVarint(windowEnd - windowStart);
+
+        for (int i = windowStart; i < windowEnd; i++) {
+            out.writeVarint(itemEntries.getSpan(i));
+        }
+
+        int lastStartLane = 0;
+        for (int i = windowStart; i < windowEnd; i++) {
+            if (itemEntries.hasItemEntry(i)) {
+                final int startLane = itemEntries.getStartLane(i);
+                out.writeSignedVarint(startLane - lastStartLane);
+                out.writeSignedVarint(itemEntries.getAnchorLane(i) - startLane);
+                lastStartLane = startLane;
+            }
+        }
+
+        int lastWidth = 0;
+        int lastHeight = 0;
+        for (int i = windowStart; i < windowEnd; i++) {
+            if (itemEntries.hasItemEntry(i)) {
+                final int width = itemEntries.getWidth(i);
+                final int height = itemEntries.getHeight(i);
+                out.writeSignedVarint(width - lastWidth);
+                out.writeSignedVarint(height - lastHeight);
+                lastWidth = width;
+                lastHeight = height;
+            }
+        }
+
+        int marginCount = 0;
+        final int marginTotal = itemEntries.getSpanMarginsCount();
+        for (int i = 0; i < marginTotal; i++) {
+            final int position = itemEntries.getSpanMarginsPosition(i);
+            if (position >= windowStart && position < windowEnd) {
+                marginCount++;
+            }
+        }
+
+        out.writeVarint(marginCount);
+
+        int lastPosition = windowStart;
+        for (int i = 0; i < marginTotal; i++) {
+            final int position = itemEntries.getSpanMarginsPosition(i);
+            if (position < windowStart || position >= windowEnd) {
+                continue;
+            }
+
+            final int[] margins = itemEntries.getSpanMarginsAt(i);
+            out.writeVarint(position - lastPosition);
+            out.writeVarint(margins.length);
+            for (int j = 0; j < margins.length; j++) {
+                out.writeSignedVarint(margins[j]);
+            }
+
+            lastPosition = position;
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes entries written by {@link #encode(ItemEntries, int, int)}.
+     *
+     * @return the decoded entries, or null if the data was written with an
+     *         unknown version or is malformed.
+     */
+    public static ItemEntries decode(byte[] data) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+
+        final Reader in = new Reader(data);
+        try {
+            if (in.readVarint() != VERSION) {
+                return null;
+            }
+
+            final int size = in.readVarint();
+            final int windowStart = in.readVarint();
+            final int windowCount = in.readVarint();
+
+            if (size < 0 || windowStart < 0 || windowCount < 0 || windowStart + windowCount > size) {
+                return null;
+            }
+
+            final ItemEntries itemEntries = new ItemEntries();
+            if (size == 0) {
+                return itemEntries;
+            }
+
+            itemEntries.restoreSize(size);
+
+            final int[] spans = new int[windowCount];
+            for (int i = 0; i < windowCount; i++) {
+                spans[i] = in.readVarint();
+            }
+
+            final int[] startLanes = new int[windowCount];
+            final int[] anchorLanes = new int[windowCount];
+            int lastStartLane = 0;
+            for (int i = 0; i < windowCount; i++) {
+                if (spans[i] > 0) {
+                    lastStartLane += in.readSignedVarint();
+                    startLanes[i] = lastStartLane;
+                    anchorLanes[i] = lastStartLane + in.readSignedVarint();
+                }
+            }
+
+            int lastWidth = 0;
+            int lastHeight = 0;
+            for (int i = 0; i < windowCount; i++) {
+                if (spans[i] > 0) {
+                    lastWidth += in.readSignedVarint();
+                    lastHeight += in.readSignedVarint();
+                    itemEntries.restoreItemEntry(windowStart + i, startLanes[i], anchorLanes[i],
+                            spans[i], lastWidth, lastHeight);
+                }
+            }
+
+            final int marginCount = in.readVarint();
+            int lastPosition = windowStart;
+            for (int i = 0; i < marginCount; i++) {
+                lastPosition += in.readVarint();
+
+                final int[] margins = new int[in.readVarint()];
+                for (int j = 0; j < margins.length; j++) {
+                    margins[j] = in.readSignedVarint();
+                }
+
+                itemEntries.restoreSpanMargins(lastPosition, margins);
+            }
+
+            return itemEntries;
+        } catch (RuntimeException e) {
+            // Truncated or corrupted data.
+            return null;
+        }
+    }
+
+    private static final class Writer {
+        private byte[] mBuffer;
+        private int mLength;
+
+        Writer(int capacity) {
+            mBuffer = new byte[capacity];
+        }
+
+        void writeVarint(int value) {
+            if (mLength + 5 > mBuffer.length) {
+                mBuffer = Arrays.copyOf(mBuffer, Math.max(mBuffer.length * 2, mLength + 5));
+            }
+
+            while ((value & ~0x7F) != 0) {
+                mBuffer[mLength++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+
+            mBuffer[mLength++] = (byte) value;
+        }
+
+        void writeSignedVarint(int value) {
+            writeVarint((value << 1) ^ (value >> 31));
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(mBuffer, mLength);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] mData;
+        private int mPosition;
+
+        Reader(byte[] data) {
+            mData = data;
+        }
+
+        int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                final byte b = mData[mPosition++];
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+
+            throw new IndexOutOfBoundsException("Malformed varint");
+        }
+
+        int readSignedVarint() {
+            final int value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2014 Lucas Rocha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.owen.tvrecyclerview;
+
+import com.owen.tvrecyclerview.TwoWayLayoutManager.Direction;
+
+/**
+ * Snapshots of the lane end edges taken every {@link #getStride()} positions
+ * while the layout is replayed from the first item. Moving the layout to a
+ * position can then resume from the closest checkpoint instead of replaying
+ * every item from position 0.
+ *
+ * A checkpoint at position P holds the lane edges after all items before P
+ * have been placed, so it stays valid as long as none of those items change.
+ */
+public class LaneCheckpoints {
+    private static final int DEFAULT_STRIDE = 64;
+
+    private final int mStride;
+
+    private int[][] mCheckpoints;
+    private int mCount;
+
+    public LaneCheckpoints() {
+        this(DEFAULT_STRIDE);
+    }
+
+    public LaneCheckpoints(int stride) {
+        if (stride < 1) {
+            throw new IllegalArgumentException("Checkpoint stride must be at least 1");
+        }
+
+        mStride = stride;
+    }
+
+    public int getStride() {
+        return mStride;
+    }
+
+    private void ensureSize(int index) {
+        if (mCheckpoints == null) {
+            mCheckpoints = new int[Math.max(index + 1, 10)][];
+        } else if (index >= mCheckpoints.length) {
+            final int[][] oldCheckpoints = mCheckpoints;
+            mCheckpoints = new int[Math.max(index + 1, oldCheckpoints.length * 2)][];
+            System.arraycopy(oldCheckpoints, 0, mCheckpoints, 0, oldCheckpoints.length);
+        }
+    }
+
+    /**
+     * Records the current lane edges if the given position falls on a checkpoint
+     * boundary. Must be called before the item at the given position is pushed
+     * into the lanes.
+     */
+    public void save(Lanes lanes, int position) {
+        if (position == 0 || position % mStride != 0) {
+            return;
+        }
+
+        // Checkpoints are only kept as a contiguous run starting
+        // from the first one.
+        final int index = position / mStride - 1;
+        if (index != mCount) {
+            return;
+        }
+
+        ensureSize(index);
+
+        final int laneCount = lanes.getCount();
+        int[] edges = mCheckpoints[index];
+        if (edges == null || edges.length != laneCount) {
+            edges = new int[laneCount];
+            mCheckpoints[index] = edges;
+        }
+
+        lanes.getEdges(edges, Direction.END);
+        mCount++;
+    }
+
+    /**
+     * Moves the lane end edges to the closest checkpoint at or before the given
+     * position. The lanes are expected to have been reset to offset 0.
+     *
+     * @return the position the replay should resume from, 0 if there is no
+     *         usable checkpoint.
+     */
+    public int restore(Lanes lanes, int position) {
+        final int index = Math.min(position / mStride, mCount) - 1;
+        if (index < 0) {
+            return 0;
+        }
+
+        final int[] edges = mCheckpoints[index];
+        if (edges.length != lanes.getCount()) {
+            clear();
+            return 0;
+        }
+
+        lanes.setEdges(edges, Direction.END);
+        return (index + 1) * mStride;
+    }
+
+    /**
+     * Drops every checkpoint that depends on the item at the given position.
+     */
+    public void invalidateAfter(int position) {
+        mCount = Math.min(mCount, Math.max(0, position) / mStride);
+    }
+
+    public void clear() {
+        mCount = 0;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2014 Lucas Rocha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.owen.tvrecyclerview;
+
+import java.util.Arrays;
+
+/**
+ * Tournament tree over the lane edges keeping the maximum start edge and the
+ * minimum end edge of all lanes, i.e. the inner edges of the layout, along
+ * with the lanes they belong to (the first one on ties). Updating the edges
+ * of a lane is O(log lanes), reading the inner edges is O(1).
+ */
+final class LaneEdgeTree {
+    private final int mLeafCount;
+
+    // Heap layout: node i has children 2i and 2i+1, the root is at 1
+    // and the leaves start at mLeafCount.
+    private final int[] mMaxStarts;
+    private final int[] mMinEnds;
+    private final int[] mMaxStartLanes;
+    private final int[] mMinEndLanes;
+
+    LaneEdgeTree(int laneCount) {
+        int leafCount = 1;
+        while (leafCount < laneCount) {
+            leafCount *= 2;
+        }
+        mLeafCount = leafCount;
+
+        mMaxStarts = new int[leafCount * 2];
+        mMinEnds = new int[leafCount * 2];
+        Arrays.fill(mMaxStarts, Integer.MIN_VALUE);
+        Arrays.fill(mMinEnds, Integer.MAX_VALUE);
+
+        mMaxStartLanes = new int[leafCount * 2];
+        mMinEndLanes = new int[leafCount * 2];
+        for (int i = 0; i < leafCount; i++) {
+            mMaxStartLanes[leafCount + i] = i;
+            mMinEndLanes[leafCount + i] = i;
+        }
+    }
+
+    private void updateNode(int node) {
+        final int left = node << 1;
+        final int right = left + 1;
+
+        if (mMaxStarts[right] > mMaxStarts[left]) {
+            mMaxStarts[node] = mMaxStarts[right];
+            mMaxStartLanes[node] = mMaxStartLanes[right];
+        } else {
+            mMaxStarts[node] = mMaxStarts[left];
+            mMaxStartLanes[node] = mMaxStartLanes[left];
+        }
+
+        if (mMinEnds[right] < mMinEnds[left]) {
+            mMinEnds[node] = mMinEnds[right];
+            mMinEndLanes[node] = mMinEndLanes[right];
+        } else {
+            mMinEnds[node] = mMinEnds[left];
+            mMinEndLanes[node] = mMinEndLanes[left];
+        }
+    }
+
+    /**
+     * Sets the edges of the given lane and updates its ancestors.
+     */
+    void set(int lane, int start, int end) {
+        int node = mLeafCount + lane;
+        mMaxStarts[node] = start;
+        mMinEnds[node] = end;
+
+        node >>= 1;
+        while (node > 0) {
+            updateNode(node);
+            node >>= 1;
+        }
+    }
+
+    /**
+     * Sets the edges of a lane without updating its ancestors. Must be
+     * followed by {@link #rebuild()}.
+     */
+    void setLeaf(int lane, int start, int end) {
+        mMaxStarts[mLeafCount + lane] = start;
+        mMinEnds[mLeafCount + lane] = end;
+    }
+
+    void rebuild() {
+        for (int node = mLeafCount - 1; node > 0; node--) {
+            updateNode(node);
+        }
+    }
+
+    int getMaxStart() {
+        return mMaxStarts[1];
+    }
+
+    int getMinEnd() {
+        return mMinEnds[1];
+    }
+
+    int getMaxStartLane() {
+        return mMaxStartLanes[1];
+    }
+
+    int getMinEndLane() {
+        return mMinEndLanes[1];
+    }
+
+    int getStart(int lane) {
+        return mMaxStarts[mLeafCount + lane];
+    }
+
+    int getEnd(int lane) {
+        return mMinEnds[mLeafCount + lane];
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2014 Lucas Rocha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.owen.tvrecyclerview;
+
+import android.graphics.Rect;
+
+import com.owen.tvrecyclerview.Lanes.LaneInfo;
+import com.owen.tvrecyclerview.TwoWayLayoutManager.Direction;
+
+/**
+ * Keeps the item entries and the lane checkpoints in sync with the lanes, and
+ * replays the entries into the lanes to move the layout to a position. Views
+ * are left to the {@link Callback}, so the same code runs in the layout
+ * managers and in the benchmarks.
+ */
+final class LaneReplay {
+    interface Callback {
+        /**
+         * Creates the entry of a position that doesn't have one, with its
+         * span and size. Its lane may be left undefined.
+         */
+        void createItemEntry(int position);
+
+        /**
+         * Called when the cached lane or size of the given position changed,
+         * so whatever was derived from it for the following items is stale.
+         */
+        void onItemEntryChanged(int position);
+    }
+
+    private final LaneCheckpoints mLaneCheckpoints;
+
+    LaneReplay(LaneCheckpoints laneCheckpoints) {
+        mLaneCheckpoints = laneCheckpoints;
+    }
+
+    /**
+     * Gets the lane cached for the given position. When laying out towards
+     * the end, a cached lane that no longer fits the current lane edges (e.g.
+     * after a move reordered the items before it) is reported as undefined so
+     * that it gets recomputed.
+     */
+    static void getLane(Lanes lanes, ItemEntries itemEntries, int position,
+                        Direction direction, LaneInfo outInfo) {
+        itemEntries.getLane(position, outInfo);
+
+        if (direction == Direction.END && !outInfo.isUndefined() &&
+                !lanes.fitsLaneSpan(outInfo, itemEntries.getSpan(position))) {
+            outInfo.setUndefined();
+        }
+    }
+
+    static void setLane(ItemEntries itemEntries, int position, LaneInfo laneInfo,
+                        Callback callback) {
+        final int oldStartLane = itemEntries.getStartLane(position);
+        if (oldStartLane != Lanes.NO_LANE && oldStartLane != laneInfo.startLane) {
+            callback.onItemEntryChanged(position);
+        }
+
+        itemEntries.setLane(position, laneInfo);
+    }
+
+    void setSize(ItemEntries itemEntries, int position, int width, int height,
+                 Callback callback) {
+        // Lane checkpoints past this item were computed with its
+        // previous size.
+        if (itemEntries.getWidth(position) != width ||
+                itemEntries.getHeight(position) != height) {
+            mLaneCheckpoints.invalidateAfter(position);
+            callback.onItemEntryChanged(position);
+        }
+
+        itemEntries.setSize(position, width, height);
+    }
+
+    /**
+     * Pushes the frame of the given position into the lanes it spans. The
+     * margins left above a spanning item are recorded the first time it's
+     * pushed towards the end, and restored when it's pushed towards the start.
+     */
+    static void pushChildFrame(Lanes lanes, ItemEntries itemEntries, int position,
+                               Rect childFrame, int lane, int laneSpan, Direction direction) {
+        final boolean hasEntry = (itemEntries != null && itemEntries.hasItemEntry(position));
+        final boolean shouldSetMargins = (direction == Direction.END &&
+                                          hasEntry && !itemEntries.hasSpanMargins(position));
+
+        for (int i = lane; i < lane + laneSpan; i++) {
+            final int spanMargin;
+            if (hasEntry && direction != Direction.END) {
+                spanMargin = itemEntries.getSpanMargin(position, i - lane);
+            } else {
+                spanMargin = 0;
+            }
+
+            final int margin = lanes.pushChildFrame(childFrame, i, spanMargin, direction);
+            if (laneSpan > 1 && shouldSetMargins) {
+                itemEntries.setSpanMargin(position, i - lane, margin, laneSpan);
+            }
+        }
+    }
+
+    /**
+     * Resets the lanes and replays the items up to the given position into
+     * them, resuming from the closest lane checkpoint and recording new ones
+     * on the way. Lanes that are undefined or no longer fit are found again.
+     * The given position isn't pushed, its lane and frame are left in outInfo
+     * and outFrame.
+     *
+     * @return the number of items replayed.
+     */
+    int replay(Lanes lanes, ItemEntries itemEntries, int position, Callback callback,
+               LaneInfo outInfo, Rect outFrame) {
+        lanes.reset(0);
+
+        final int replayStart = mLaneCheckpoints.restore(lanes, position);
+
+        for (int i = replayStart; i <= position; i++) {
+            mLaneCheckpoints.save(lanes, i);
+
+            if (!itemEntries.hasItemEntry(i)) {
+                callback.createItemEntry(i);
+            }
+
+            final int span = itemEntries.getSpan(i);
+            getLane(lanes, itemEntries, i, Direction.END, outInfo);
+
+            // The lanes might have been invalidated because of an added,
+            // removed or moved item. See BaseLayoutManager.invalidateItemLanes().
+            if (outInfo.isUndefined()) {
+                lanes.findLane(outInfo, span, Direction.END);
+                setLane(itemEntries, i, outInfo, callback);
+            }
+
+            lanes.getChildFrame(outFrame, itemEntries.getWidth(i), itemEntries.getHeight(i),
+                    outInfo, Direction.END);
+
+            if (i != position) {
+                pushChildFrame(lanes, itemEntries, i, outFrame, outInfo.startLane, span,
+                        Direction.END);
+            }
+        }
+
+        return position - replayStart + 1;
+    }
+}
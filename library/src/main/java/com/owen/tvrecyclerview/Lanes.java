@@ -20,20 +20,34 @@ import android.graphics.Rect;
 import com.owen.tvrecyclerview.TwoWayLayoutManager.Orientation;
 import com.owen.tvrecyclerview.TwoWayLayoutManager.Direction;
 
+import java.util.Arrays;
+
 public class Lanes {
     public static final int NO_LANE = -1;
 
-    private final BaseLayoutManager mLayout;
     private final boolean mIsVertical;
-    private final Rect[] mLanes;
-    private final Rect[] mSavedLanes;
     private final int mLaneSize;
 
-    private final Rect mTempRect = new Rect();
-    private final LaneInfo mTempLaneInfo = new LaneInfo();
+    // Lane edges along the scroll axis (top/bottom when vertical, left/right
+    // when horizontal), relative to mOffset.
+    private final int[] mStarts;
+    private final int[] mEnds;
+    private final int[] mSavedStarts;
+    private final int[] mSavedEnds;
+
+    // Lane edges along the cross axis, these never change.
+    private final int[] mCrossStarts;
+    private final int[] mCrossEnds;
+
+    private final LaneEdgeTree mEdgeTree;
 
-    private Integer mInnerStart;
-    private Integer mInnerEnd;
+    // Scroll offset applied to the lane edges along the scroll axis. The lane
+    // edges and the edge tree are relative to it so that scrolling doesn't
+    // need to touch every lane.
+    private int mOffset;
+    private int mSavedOffset;
+
+    private int mFindLaneCount;
 
     public static class LaneInfo {
         public int startLane;
@@ -54,44 +68,48 @@ public class Lanes {
         }
     }
 
-    public Lanes(BaseLayoutManager layout, Orientation orientation, Rect[] lanes, int laneSize) {
-        mLayout = layout;
-        mIsVertical = (orientation == Orientation.VERTICAL);
-        mLanes = lanes;
-        mLaneSize = laneSize;
+    public Lanes(Orientation orientation, Rect[] lanes, int laneSize) {
+        this(orientation == Orientation.VERTICAL, lanes.length, laneSize);
 
-        mSavedLanes = new Rect[mLanes.length];
-        for (int i = 0; i < mLanes.length; i++) {
-            mSavedLanes[i] = new Rect();
+        for (int i = 0; i < lanes.length; i++) {
+            final Rect laneRect = lanes[i];
+            mStarts[i] = (mIsVertical ? laneRect.top : laneRect.left);
+            mEnds[i] = (mIsVertical ? laneRect.bottom : laneRect.right);
+            mCrossStarts[i] = (mIsVertical ? laneRect.left : laneRect.top);
+            mCrossEnds[i] = (mIsVertical ? laneRect.right : laneRect.bottom);
         }
+
+        updateEdges();
     }
 
     public Lanes(BaseLayoutManager layout, int laneCount) {
-        mLayout = layout;
-        mIsVertical = layout.isVertical();
+        this(layout.isVertical(), laneCount, calculateLaneSize(layout, laneCount));
+
+        final int crossPadding = (mIsVertical ? layout.getPaddingLeft() : layout.getPaddingTop());
+        final int padding = (mIsVertical ? layout.getPaddingTop() : layout.getPaddingLeft());
 
-        mLanes = new Rect[laneCount];
-        mSavedLanes = new Rect[laneCount];
         for (int i = 0; i < laneCount; i++) {
-            mLanes[i] = new Rect();
-            mSavedLanes[i] = new Rect();
+            mStarts[i] = padding;
+            mEnds[i] = padding;
+            mCrossStarts[i] = crossPadding + i * mLaneSize;
+            mCrossEnds[i] = mCrossStarts[i] + mLaneSize;
         }
 
-        mLaneSize = calculateLaneSize(layout, laneCount);
-
-        final int paddingLeft = layout.getPaddingLeft();
-        final int paddingTop = layout.getPaddingTop();
+        updateEdges();
+    }
 
-        for (int i = 0; i < laneCount; i++) {
-            final int laneStart = i * mLaneSize;
+    private Lanes(boolean isVertical, int laneCount, int laneSize) {
+        mIsVertical = isVertical;
+        mLaneSize = laneSize;
 
-            final int l = paddingLeft + (mIsVertical ? laneStart : 0);
-            final int t = paddingTop + (mIsVertical ? 0 : laneStart);
-            final int r = (mIsVertical ? l + mLaneSize : l);
-            final int b = (mIsVertical ? t : t + mLaneSize);
+        mStarts = new int[laneCount];
+        mEnds = new int[laneCount];
+        mSavedStarts = new int[laneCount];
+        mSavedEnds = new int[laneCount];
+        mCrossStarts = new int[laneCount];
+        mCrossEnds = new int[laneCount];
 
-            mLanes[i].set(l, t, r, b);
-        }
+        mEdgeTree = new LaneEdgeTree(laneCount);
     }
 
     public static int calculateLaneSize(BaseLayoutManager layout, int laneCount) {
@@ -108,9 +126,16 @@ public class Lanes {
         }
     }
 
-    private void invalidateEdges() {
-        mInnerStart = null;
-        mInnerEnd = null;
+    private void updateEdges(int lane) {
+        mEdgeTree.set(lane, mStarts[lane], mEnds[lane]);
+    }
+
+    private void updateEdges() {
+        for (int i = 0; i < mStarts.length; i++) {
+            mEdgeTree.setLeaf(i, mStarts[i], mEnds[i]);
+        }
+
+        mEdgeTree.rebuild();
     }
 
     public Orientation getOrientation() {
@@ -118,15 +143,16 @@ public class Lanes {
     }
 
     public void save() {
-        for (int i = 0; i < mLanes.length; i++) {
-            mSavedLanes[i].set(mLanes[i]);
-        }
+        System.arraycopy(mStarts, 0, mSavedStarts, 0, mStarts.length);
+        System.arraycopy(mEnds, 0, mSavedEnds, 0, mEnds.length);
+        mSavedOffset = mOffset;
     }
 
     public void restore() {
-        for (int i = 0; i < mLanes.length; i++) {
-            mLanes[i].set(mSavedLanes[i]);
-        }
+        System.arraycopy(mSavedStarts, 0, mStarts, 0, mStarts.length);
+        System.arraycopy(mSavedEnds, 0, mEnds, 0, mEnds.length);
+        mOffset = mSavedOffset;
+        updateEdges();
     }
 
     public int getLaneSize() {
@@ -134,216 +160,167 @@ public class Lanes {
     }
 
     public int getCount() {
-        return mLanes.length;
-    }
-
-    private void offsetLane(int lane, int offset) {
-        mLanes[lane].offset(mIsVertical ? 0 : offset,
-                mIsVertical ? offset : 0);
+        return mStarts.length;
     }
 
     public void offset(int offset) {
-        for (int i = 0; i < mLanes.length; i++) {
-            offset(i, offset);
-        }
-
-        invalidateEdges();
+        mOffset += offset;
     }
 
     public void offset(int lane, int offset) {
-        offsetLane(lane, offset);
-        invalidateEdges();
+        mStarts[lane] += offset;
+        mEnds[lane] += offset;
+        updateEdges(lane);
     }
 
     public void getLane(int lane, Rect laneRect) {
-        laneRect.set(mLanes[lane]);
+        final int start = mStarts[lane] + mOffset;
+        final int end = mEnds[lane] + mOffset;
+
+        if (mIsVertical) {
+            laneRect.set(mCrossStarts[lane], start, mCrossEnds[lane], end);
+        } else {
+            laneRect.set(start, mCrossStarts[lane], end, mCrossEnds[lane]);
+        }
+    }
+
+    public void getEdges(int[] outEdges, Direction direction) {
+        final int[] edges = (direction == Direction.END ? mEnds : mStarts);
+        for (int i = 0; i < edges.length; i++) {
+            outEdges[i] = edges[i] + mOffset;
+        }
+    }
+
+    public void setEdges(int[] edges, Direction direction) {
+        final int[] laneEdges = (direction == Direction.END ? mEnds : mStarts);
+        for (int i = 0; i < laneEdges.length; i++) {
+            laneEdges[i] = edges[i] - mOffset;
+        }
+
+        updateEdges();
     }
 
     public int pushChildFrame(Rect outRect, int lane, int margin, Direction direction) {
-        final int delta;
+        final int childStart = (mIsVertical ? outRect.top : outRect.left) - mOffset;
+        final int childEnd = (mIsVertical ? outRect.bottom : outRect.right) - mOffset;
 
-        final Rect laneRect = mLanes[lane];
-        if (mIsVertical) {
-            if (direction == Direction.END) {
-                delta = outRect.top - laneRect.bottom;
-                laneRect.bottom = outRect.bottom + margin;
-            } else {
-                delta = outRect.bottom - laneRect.top;
-                laneRect.top = outRect.top - margin;
-            }
+        final int delta;
+        if (direction == Direction.END) {
+            delta = childStart - mEnds[lane];
+            mEnds[lane] = childEnd + margin;
         } else {
-            if (direction == Direction.END) {
-                delta = outRect.left - laneRect.right;
-                laneRect.right = outRect.right + margin;
-            } else {
-                delta = outRect.right - laneRect.left;
-                laneRect.left = outRect.left - margin;
-            }
+            delta = childEnd - mStarts[lane];
+            mStarts[lane] = childStart - margin;
         }
 
-        invalidateEdges();
+        updateEdges(lane);
 
         return delta;
     }
 
     public void popChildFrame(Rect outRect, int lane, int margin, Direction direction) {
-        final Rect laneRect = mLanes[lane];
-        if (mIsVertical) {
-            if (direction == Direction.END) {
-                laneRect.top = outRect.bottom - margin;
-            } else {
-                laneRect.bottom = outRect.top + margin;
-            }
+        if (direction == Direction.END) {
+            final int childEnd = (mIsVertical ? outRect.bottom : outRect.right) - mOffset;
+            mStarts[lane] = childEnd - margin;
         } else {
-            if (direction == Direction.END) {
-                laneRect.left = outRect.right - margin;
-            } else {
-                laneRect.right = outRect.left + margin;
-            }
+            final int childStart = (mIsVertical ? outRect.top : outRect.left) - mOffset;
+            mEnds[lane] = childStart + margin;
         }
 
-        invalidateEdges();
+        updateEdges(lane);
     }
 
     public void getChildFrame(Rect outRect, int childWidth, int childHeight, LaneInfo laneInfo,
                               Direction direction) {
-        final Rect startRect = mLanes[laneInfo.startLane];
+        final int crossStart = mCrossStarts[laneInfo.startLane];
 
         // The anchor lane only applies when we're get child frame in the direction
         // of the forward scroll. We'll need to rethink this once we start working on
         // RTL support.
-        final int anchorLane =
-                (direction == Direction.END ? laneInfo.anchorLane : laneInfo.startLane);
-        final Rect anchorRect = mLanes[anchorLane];
+        final int start;
+        if (direction == Direction.END) {
+            start = mEnds[laneInfo.anchorLane] + mOffset;
+        } else {
+            start = mStarts[laneInfo.startLane] + mOffset -
+                    (mIsVertical ? childHeight : childWidth);
+        }
 
         if (mIsVertical) {
-            outRect.left = startRect.left;
-            outRect.top =
-                    (direction == Direction.END ? anchorRect.bottom : anchorRect.top - childHeight);
+            outRect.left = crossStart;
+            outRect.top = start;
         } else {
-            outRect.top = startRect.top;
-            outRect.left =
-                    (direction == Direction.END ? anchorRect.right : anchorRect.left - childWidth);
+            outRect.left = start;
+            outRect.top = crossStart;
         }
 
         outRect.right = outRect.left + childWidth;
         outRect.bottom = outRect.top + childHeight;
     }
 
-    private boolean intersects(int start, int count, Rect r) {
-        for (int l = start; l < start + count; l++) {
-            if (Rect.intersects(mLanes[l], r)) {
-                return true;
-            }
+    /**
+     * Returns whether an item with the given lane and span can still be added
+     * at the end edge of its anchor lane without overlapping any of the other
+     * lanes it spans, i.e. whether a cached lane is still consistent with the
+     * current lane edges.
+     */
+    public boolean fitsLaneSpan(LaneInfo laneInfo, int laneSpan) {
+        final int startLane = laneInfo.startLane;
+        final int anchorLane = laneInfo.anchorLane;
+        if (startLane < 0 || startLane + laneSpan > mStarts.length ||
+                anchorLane < startLane || anchorLane >= startLane + laneSpan) {
+            return false;
         }
 
-        return false;
-    }
-
-    private int findLaneThatFitsSpan(int anchorLane, int laneSpan, Direction direction) {
-        final int findStart = Math.max(0, anchorLane - laneSpan + 1);
-        final int findEnd = Math.min(findStart + laneSpan, mLanes.length - laneSpan + 1);
-        for (int l = findStart; l < findEnd; l++) {
-            mTempLaneInfo.set(l, anchorLane);
-
-            getChildFrame(mTempRect, mIsVertical ? laneSpan * mLaneSize : 1,
-                    mIsVertical ? 1 : laneSpan * mLaneSize, mTempLaneInfo, direction);
-
-            if (!intersects(l, laneSpan, mTempRect)) {
-                return l;
+        final int anchorEdge = mEdgeTree.getEnd(anchorLane);
+        for (int l = startLane; l < startLane + laneSpan; l++) {
+            if (mEdgeTree.getEnd(l) > anchorEdge) {
+                return false;
             }
         }
 
-        return Lanes.NO_LANE;
+        return true;
     }
 
+    /**
+     * Finds the lanes for a new item spanning the given number of lanes, see
+     * {@link SkylinePlacement}. O(1) for single lane items.
+     */
     public void findLane(LaneInfo outInfo, int laneSpan, Direction direction) {
-        outInfo.setUndefined();
-
-        int targetEdge = (direction == Direction.END ? Integer.MAX_VALUE : Integer.MIN_VALUE);
-        for (int l = 0; l < mLanes.length; l++) {
-            final int laneEdge;
-            if (mIsVertical) {
-                laneEdge = (direction == Direction.END ? mLanes[l].bottom : mLanes[l].top);
-            } else {
-                laneEdge = (direction == Direction.END ? mLanes[l].right : mLanes[l].left);
-            }
-
-            if ((direction == Direction.END && laneEdge < targetEdge) ||
-                (direction == Direction.START && laneEdge > targetEdge)) {
+        mFindLaneCount++;
+        SkylinePlacement.findLane(mEdgeTree, mStarts.length, laneSpan, direction, outInfo);
+    }
 
-                final int targetLane = findLaneThatFitsSpan(l, laneSpan, direction);
-                if (targetLane != NO_LANE) {
-                    targetEdge = laneEdge;
-                    outInfo.set(targetLane, l);
-                }
-            }
-        }
+    /**
+     * Returns the number of {@link #findLane(LaneInfo, int, Direction)} calls
+     * on these lanes so far.
+     */
+    int getFindLaneCount() {
+        return mFindLaneCount;
     }
 
     public void reset(Direction direction) {
-        for (int i = 0; i < mLanes.length; i++) {
-            final Rect laneRect = mLanes[i];
-            if (mIsVertical) {
-                if (direction == Direction.START) {
-                    laneRect.bottom = laneRect.top;
-                } else {
-                    laneRect.top = laneRect.bottom;
-                }
-            } else {
-                if (direction == Direction.START) {
-                    laneRect.right = laneRect.left;
-                } else {
-                    laneRect.left = laneRect.right;
-                }
-            }
+        if (direction == Direction.START) {
+            System.arraycopy(mStarts, 0, mEnds, 0, mStarts.length);
+        } else {
+            System.arraycopy(mEnds, 0, mStarts, 0, mEnds.length);
         }
 
-        invalidateEdges();
+        updateEdges();
     }
 
     public void reset(int offset) {
-        for (int i = 0; i < mLanes.length; i++) {
-            final Rect laneRect = mLanes[i];
-
-            laneRect.offsetTo(mIsVertical ? laneRect.left : offset,
-                              mIsVertical ? offset : laneRect.top);
-
-            if (mIsVertical) {
-                laneRect.bottom = laneRect.top;
-            } else {
-                laneRect.right = laneRect.left;
-            }
-        }
+        mOffset = 0;
+        Arrays.fill(mStarts, offset);
+        Arrays.fill(mEnds, offset);
 
-        invalidateEdges();
+        updateEdges();
     }
 
     public int getInnerStart() {
-        if (mInnerStart != null) {
-            return mInnerStart;
-        }
-
-        mInnerStart = Integer.MIN_VALUE;
-        for (int i = 0; i < mLanes.length; i++) {
-            final Rect laneRect = mLanes[i];
-            mInnerStart = Math.max(mInnerStart, mIsVertical ? laneRect.top : laneRect.left);
-        }
-
-        return mInnerStart;
+        return mEdgeTree.getMaxStart() + mOffset;
     }
 
     public int getInnerEnd() {
-        if (mInnerEnd != null) {
-            return mInnerEnd;
-        }
-
-        mInnerEnd = Integer.MAX_VALUE;
-        for (int i = 0; i < mLanes.length; i++) {
-            final Rect laneRect = mLanes[i];
-            mInnerEnd = Math.min(mInnerEnd, mIsVertical ? laneRect.bottom : laneRect.right);
-        }
-
-        return mInnerEnd;
+        return mEdgeTree.getMinEnd() + mOffset;
     }
 }
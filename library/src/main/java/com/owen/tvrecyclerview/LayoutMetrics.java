@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2014 Lucas Rocha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.owen.tvrecyclerview;
+
+/**
+ * Counters and phase timings of a single layout pass or scroll of a
+ * {@link TwoWayLayoutManager}, delivered through
+ * {@link LayoutTracer#onLayoutMetrics(LayoutMetrics)}. They're only recorded
+ * while a tracer is installed.
+ *
+ * Phase times are nested: fill time includes the measure time of the added
+ * views, the total time includes everything else.
+ */
+public final class LayoutMetrics {
+    public static final int PASS_LAYOUT = 0;
+    public static final int PASS_SCROLL = 1;
+
+    int mPass;
+
+    int mViewsAdded;
+    int mViewsRecycledFromStart;
+    int mViewsRecycledFromEnd;
+    int mItemsReplayed;
+    int mFindLaneCalls;
+
+    long mTotalNanos;
+    long mFillNanos;
+    long mMeasureNanos;
+    long mRecycleNanos;
+    long mReplayNanos;
+
+    public LayoutMetrics() {
+    }
+
+    /**
+     * Copies the given metrics, e.g. to keep them after the callback returns.
+     */
+    public LayoutMetrics(LayoutMetrics other) {
+        mPass = other.mPass;
+        mViewsAdded = other.mViewsAdded;
+        mViewsRecycledFromStart = other.mViewsRecycledFromStart;
+        mViewsRecycledFromEnd = other.mViewsRecycledFromEnd;
+        mItemsReplayed = other.mItemsReplayed;
+        mFindLaneCalls = other.mFindLaneCalls;
+        mTotalNanos = other.mTotalNanos;
+        mFillNanos = other.mFillNanos;
+        mMeasureNanos = other.mMeasureNanos;
+        mRecycleNanos = other.mRecycleNanos;
+        mReplayNanos = other.mReplayNanos;
+    }
+
+    void reset(int pass) {
+        mPass = pass;
+        mViewsAdded = 0;
+        mViewsRecycledFromStart = 0;
+        mViewsRecycledFromEnd = 0;
+        mItemsReplayed = 0;
+        mFindLaneCalls = 0;
+        mTotalNanos = 0;
+        mFillNanos = 0;
+        mMeasureNanos = 0;
+        mRecycleNanos = 0;
+        mReplayNanos = 0;
+    }
+
+    /**
+     * Returns either {@link #PASS_LAYOUT} or {@link #PASS_SCROLL}.
+     */
+    public int getPass() {
+        return mPass;
+    }
+
+    /**
+     * Returns the number of views taken from the recycler and laid out.
+     */
+    public int getViewsAdded() {
+        return mViewsAdded;
+    }
+
+    /**
+     * Returns the number of views recycled because they scrolled out
+     * past the start.
+     */
+    public int getViewsRecycledFromStart() {
+        return mViewsRecycledFromStart;
+    }
+
+    /**
+     * Returns the number of views recycled because they scrolled out
+     * past the end.
+     */
+    public int getViewsRecycledFromEnd() {
+        return mViewsRecycledFromEnd;
+    }
+
+    /**
+     * Returns the number of items replayed into the lanes to move the
+     * layout to a position, from the closest lane checkpoint.
+     */
+    public int getItemsReplayed() {
+        return mItemsReplayed;
+    }
+
+    /**
+     * Returns the number of lane searches for items without a cached lane.
+     */
+    public int getFindLaneCalls() {
+        return mFindLaneCalls;
+    }
+
+    public long getTotalNanos() {
+        return mTotalNanos;
+    }
+
+    public long getFillNanos() {
+        return mFillNanos;
+    }
+
+    public long getMeasureNanos() {
+        return mMeasureNanos;
+    }
+
+    public long getRecycleNanos() {
+        return mRecycleNanos;
+    }
+
+    public long getReplayNanos() {
+        return mReplayNanos;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2014 Lucas Rocha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.owen.tvrecyclerview;
+
+import com.owen.tvrecyclerview.TwoWayLayoutManager.Direction;
+
+/**
+ * Receives the layout, fill, recycle, bind and focus events of a
+ * {@link TwoWayLayoutManager} and its {@link com.owen.tvrecyclerview.widget.TvRecyclerView}.
+ *
+ * Every call site checks for a tracer first, so nothing is computed or
+ * formatted when none is installed. Callbacks run on the UI thread in the
+ * middle of a layout or scroll and should be cheap, e.g. bumping counters.
+ * Override only the ones you need.
+ */
+public abstract class LayoutTracer {
+    /**
+     * Called before the children are laid out from scratch.
+     */
+    public void onLayoutStart(int itemCount) {
+    }
+
+    /**
+     * Called once the children are laid out, with the resulting child count.
+     */
+    public void onLayoutEnd(int childCount) {
+    }
+
+    /**
+     * Called after filling towards the given direction, starting at the given
+     * position, with the number of views that were added.
+     */
+    public void onFill(Direction direction, int position, int viewCount) {
+    }
+
+    /**
+     * Called when the view for the given position is taken from the recycler,
+     * which binds it unless it came straight from the scrap.
+     */
+    public void onBindView(int position) {
+    }
+
+    /**
+     * Called when the view for the given position scrolled out towards the
+     * start or the end and was recycled.
+     */
+    public void onRecycleView(int position, Direction direction) {
+    }
+
+    /**
+     * Called when the item at the given position gains or loses focus.
+     */
+    public void onItemFocusChanged(int position, boolean hasFocus) {
+    }
+
+    /**
+     * Called when the recycler view itself gains or loses focus, with the
+     * focus direction as in {@link android.view.View#onFocusChanged(boolean, int, android.graphics.Rect)}.
+     */
+    public void onFocusChanged(boolean gainFocus, int direction) {
+    }
+
+    /**
+     * Called at the end of every layout pass and scroll. The metrics instance
+     * is reused, copy it to keep it around.
+     */
+    public void onLayoutMetrics(LayoutMetrics metrics) {
+    }
+}
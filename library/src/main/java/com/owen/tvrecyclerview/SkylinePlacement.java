@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2014 Lucas Rocha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.owen.tvrecyclerview;
+
+import com.owen.tvrecyclerview.Lanes.LaneInfo;
+import com.owen.tvrecyclerview.TwoWayLayoutManager.Direction;
+
+/**
+ * Finds the lanes for a new item straight from the lane edges.
+ *
+ * When laying out towards the end, the anchor lane is the one with the
+ * closest end edge around which the item fits, i.e. there's a window of
+ * consecutive lanes that can take it at that edge without it landing inside
+ * any of them. The item goes to the first such window. Ties go to the first
+ * anchor lane. Towards the start it's the mirror image over the start edges,
+ * except that the item is placed against the start edge of its first lane.
+ *
+ * Single lane items are answered straight from the {@link LaneEdgeTree} in
+ * O(1). Wider items check every window around the anchor lanes that would
+ * improve on the current one, O(lanes * span^2) at worst.
+ */
+final class SkylinePlacement {
+    private SkylinePlacement() {
+    }
+
+    static void findLane(LaneEdgeTree edges, int laneCount, int laneSpan, Direction direction,
+                         LaneInfo outInfo) {
+        outInfo.setUndefined();
+
+        if (laneSpan < 1 || laneSpan > laneCount) {
+            return;
+        }
+
+        if (laneSpan == 1) {
+            final int lane =
+                    (direction == Direction.END ? edges.getMinEndLane() : edges.getMaxStartLane());
+            outInfo.set(lane, lane);
+            return;
+        }
+
+        final boolean towardsEnd = (direction == Direction.END);
+        int targetEdge = (towardsEnd ? Integer.MAX_VALUE : Integer.MIN_VALUE);
+        for (int l = 0; l < laneCount; l++) {
+            final int laneEdge = (towardsEnd ? edges.getEnd(l) : edges.getStart(l));
+            if ((towardsEnd && laneEdge >= targetEdge) ||
+                    (!towardsEnd && laneEdge <= targetEdge)) {
+                continue;
+            }
+
+            final int startLane = findLaneThatFitsSpan(edges, laneCount, l, laneSpan, direction);
+            if (startLane != Lanes.NO_LANE) {
+                targetEdge = laneEdge;
+                outInfo.set(startLane, l);
+            }
+        }
+    }
+
+    /**
+     * Returns the first lane of a window around the given anchor lane that
+     * can take the item, or {@link Lanes#NO_LANE}.
+     */
+    private static int findLaneThatFitsSpan(LaneEdgeTree edges, int laneCount, int anchorLane,
+                                            int laneSpan, Direction direction) {
+        final int findStart = Math.max(0, anchorLane - laneSpan + 1);
+        final int findEnd = Math.min(findStart + laneSpan, laneCount - laneSpan + 1);
+        for (int l = findStart; l < findEnd; l++) {
+            if (fitsSpan(edges, l, anchorLane, laneSpan, direction)) {
+                return l;
+            }
+        }
+
+        return Lanes.NO_LANE;
+    }
+
+    /**
+     * Whether the item fits the lanes from startLane, i.e. its leading edge
+     * doesn't land inside any of them. Towards the end it's added at the end
+     * edge of the anchor lane, towards the start at the start edge of the
+     * first lane.
+     */
+    private static boolean fitsSpan(LaneEdgeTree edges, int startLane, int anchorLane,
+                                    int laneSpan, Direction direction) {
+        for (int l = startLane; l < startLane + laneSpan; l++) {
+            final int laneStart = edges.getStart(l);
+            final int laneEnd = edges.getEnd(l);
+
+            if (direction == Direction.END) {
+                final int edge = edges.getEnd(anchorLane);
+                if (laneStart <= edge && edge < laneEnd) {
+                    return false;
+                }
+            } else {
+                final int edge = edges.getStart(startLane);
+                if (laneStart < edge && edge <= laneEnd) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2014 Lucas Rocha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.owen.tvrecyclerview;
+
+import android.util.SparseIntArray;
+
+/**
+ * Provides the spans of the items by adapter position so that layouts with
+ * multi-lane items can compute lanes without binding views. When set, it takes
+ * precedence over the spans declared in the item layout params.
+ *
+ * Both spans default to 1, override the ones used by the target layout:
+ * column and row spans for the spannable grid, the span across lanes
+ * (columns when vertical, rows when horizontal) for the staggered grid.
+ */
+public abstract class SpanSizeLookup {
+    private final SparseIntArray mColSpanCache = new SparseIntArray();
+    private final SparseIntArray mRowSpanCache = new SparseIntArray();
+
+    private boolean mCacheEnabled = false;
+
+    public int getColSpan(int position) {
+        return 1;
+    }
+
+    public int getRowSpan(int position) {
+        return 1;
+    }
+
+    /**
+     * Enables caching of the returned spans. The cache is cleared by the
+     * layout manager on every adapter change.
+     */
+    public void setSpanCacheEnabled(boolean cacheEnabled) {
+        mCacheEnabled = cacheEnabled;
+        if (!cacheEnabled) {
+            invalidateCache();
+        }
+    }
+
+    public boolean isSpanCacheEnabled() {
+        return mCacheEnabled;
+    }
+
+    public void invalidateCache() {
+        mColSpanCache.clear();
+        mRowSpanCache.clear();
+    }
+
+    public int getCachedColSpan(int position) {
+        if (!mCacheEnabled) {
+            return getColSpan(position);
+        }
+
+        int span = mColSpanCache.get(position, -1);
+        if (span == -1) {
+            span = getColSpan(position);
+            mColSpanCache.put(position, span);
+        }
+
+        return span;
+    }
+
+    public int getCachedRowSpan(int position) {
+        if (!mCacheEnabled) {
+            return getRowSpan(position);
+        }
+
+        int span = mRowSpanCache.get(position, -1);
+        if (span == -1) {
+            span = getRowSpan(position);
+            mRowSpanCache.put(position, span);
+        }
+
+        return span;
+    }
+
+    /**
+     * Returns the number of lanes the item at the given position spans
+     * across for the given orientation.
+     */
+    public int getLaneSpan(int position, boolean isVertical) {
+        return (isVertical ? getCachedColSpan(position) : getCachedRowSpan(position));
+    }
+}
@@ -22,6 +22,7 @@ import android.graphics.PointF;
 import android.os.Bundle;
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.os.SystemClock;
 import android.support.v7.widget.LinearSmoothScroller;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.RecyclerView.Adapter;
@@ -31,15 +32,25 @@ import android.support.v7.widget.RecyclerView.Recycler;
 import android.support.v7.widget.RecyclerView.State;
 import android.support.v7.widget.RecyclerView.ViewHolder;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup.MarginLayoutParams;
 
+import java.util.Arrays;
 import java.util.List;
 
 public abstract class TwoWayLayoutManager extends LayoutManager {
     private static final String LOGTAG = TwoWayLayoutManager.class.getSimpleName();
 
+    private static final int DEFAULT_PREFETCH_ITEM_COUNT = 2;
+
+    // Scroll deltas further apart than this don't count towards the velocity.
+    private static final int VELOCITY_WINDOW_MS = 100;
+
+    // How far ahead in time the prefetch window looks while scrolling, and the
+    // velocity (px/s) below which nothing is laid out ahead.
+    private static final int PREFETCH_LOOKAHEAD_MS = 250;
+    private static final int PREFETCH_MIN_VELOCITY = 200;
+
     public static enum Orientation {
         HORIZONTAL,
         VERTICAL
@@ -62,6 +73,31 @@ public abstract class TwoWayLayoutManager extends LayoutManager {
     private int mLayoutStart;
     private int mLayoutEnd;
 
+    // Scrap views of the current fillFromScrapList() pass, see indexScrapList().
+    private long[] mScrapIndex = new long[0];
+    private ViewHolder[] mScrapHolders = new ViewHolder[0];
+
+    private int mPrefetchItemCount = DEFAULT_PREFETCH_ITEM_COUNT;
+    private Direction mKeyRepeatDirection;
+    private int mScrollVelocity;
+    private long mLastScrollTime;
+
+    // Recycler of the last layout or scroll, used to prefetch items between
+    // frames, and the positions prefetched since the last layout.
+    private Recycler mRecycler;
+    private int[] mPrefetchedPositions = new int[0];
+    private int mPrefetchedCount;
+    private int mPrefetchedNext;
+
+    private LayoutTracer mTracer;
+
+    // Metrics of the layout pass or scroll being recorded, if any. Passes
+    // may nest, the outermost one is delivered.
+    private final LayoutMetrics mMetrics = new LayoutMetrics();
+    private int mMetricsDepth;
+    private long mMetricsStartTime;
+    private int mMetricsFindLaneStart;
+
     public TwoWayLayoutManager(Context context, AttributeSet attrs) {
         this(context, attrs, 0);
     }
@@ -133,11 +169,17 @@ public abstract class TwoWayLayoutManager extends LayoutManager {
     }
 
     private void recycleChildrenOutOfBounds(Direction direction, Recycler recycler) {
+        final long startTime = (mMetricsDepth > 0 ? System.nanoTime() : 0);
+
         if (direction == Direction.END) {
             recycleChildrenFromStart(direction, recycler);
         } else {
             recycleChildrenFromEnd(direction, recycler);
         }
+
+        if (mMetricsDepth > 0) {
+            mMetrics.mRecycleNanos += System.nanoTime() - startTime;
+        }
     }
 
     private void recycleChildrenFromStart(Direction direction, Recycler recycler) {
@@ -158,8 +200,16 @@ public abstract class TwoWayLayoutManager extends LayoutManager {
             detachChild(child, direction);
         }
 
+        if (mMetricsDepth > 0) {
+            mMetrics.mViewsRecycledFromStart += detachedCount;
+        }
+
         while (--detachedCount >= 0) {
             final View child = getChildAt(0);
+            if (mTracer != null) {
+                mTracer.onRecycleView(getPosition(child), direction);
+            }
+
             removeAndRecycleView(child, recycler);
             updateLayoutEdgesFromRemovedChild(child, direction);
         }
@@ -185,8 +235,16 @@ public abstract class TwoWayLayoutManager extends LayoutManager {
             detachChild(child, direction);
         }
 
+        if (mMetricsDepth > 0) {
+            mMetrics.mViewsRecycledFromEnd += detachedCount;
+        }
+
         while (--detachedCount >= 0) {
             final View child = getChildAt(firstDetachedPos);
+            if (mTracer != null) {
+                mTracer.onRecycleView(getPosition(child), direction);
+            }
+
             removeAndRecycleViewAt(firstDetachedPos, recycler);
             updateLayoutEdgesFromRemovedChild(child, direction);
         }
@@ -218,23 +276,33 @@ public abstract class TwoWayLayoutManager extends LayoutManager {
             return 0;
         }
 
+        beginLayoutMetrics(LayoutMetrics.PASS_SCROLL);
+
+        mRecycler = recycler;
         offsetChildren(-delta);
+        updateScrollVelocity(delta);
 
         final Direction direction = (delta > 0 ? Direction.END : Direction.START);
         recycleChildrenOutOfBounds(direction, recycler);
 
         final int absDelta = Math.abs(delta);
-        if (canAddMoreViews(Direction.START, start - absDelta) ||
-            canAddMoreViews(Direction.END, end + absDelta)) {
+        final int prefetchSpace = getPrefetchSpace(direction);
+        final int startSpace = absDelta + (direction == Direction.START ? prefetchSpace : 0);
+        final int endSpace = absDelta + (direction == Direction.END ? prefetchSpace : 0);
+        if (canAddMoreViews(Direction.START, start - startSpace) ||
+            canAddMoreViews(Direction.END, end + endSpace)) {
             fillGap(direction, recycler, state);
         }
 
+        endLayoutMetrics();
+
         return delta;
     }
 
     private void fillGap(Direction direction, Recycler recycler, State state) {
         final int childCount = getChildCount();
-        final int extraSpace = getExtraLayoutSpace(state);
+        final int extraSpace =
+                Math.max(getExtraLayoutSpace(state), getPrefetchSpace(direction));
         final int firstPosition = getFirstVisiblePosition();
 
         if (direction == Direction.END) {
@@ -253,10 +321,15 @@ public abstract class TwoWayLayoutManager extends LayoutManager {
     private void fillBefore(int position, Recycler recycler, int extraSpace) {
         final int limit = getStartWithPadding() - extraSpace;
 
+        final int firstPosition = position;
         while (canAddMoreViews(Direction.START, limit) && position >= 0) {
             makeAndAddView(position, Direction.START, recycler);
             position--;
         }
+
+        if (mTracer != null) {
+            mTracer.onFill(Direction.START, firstPosition, firstPosition - position);
+        }
     }
 
     private void fillAfter(int pos, Recycler recycler, State state) {
@@ -266,11 +339,16 @@ public abstract class TwoWayLayoutManager extends LayoutManager {
     private void fillAfter(int position, Recycler recycler, State state, int extraSpace) {
         final int limit = getEndWithPadding() + extraSpace;
 
+        final int firstPosition = position;
         final int itemCount = state.getItemCount();
         while (canAddMoreViews(Direction.END, limit) && position < itemCount) {
             makeAndAddView(position, Direction.END, recycler);
             position++;
         }
+
+        if (mTracer != null) {
+            mTracer.onFill(Direction.END, firstPosition, position - firstPosition);
+        }
     }
 
     private void fillSpecific(int position, Recycler recycler, State state) {
@@ -401,38 +479,31 @@ public abstract class TwoWayLayoutManager extends LayoutManager {
         }
     }
 
-    private static View findNextScrapView(List<ViewHolder> scrapList, Direction direction,
-                                          int position) {
+    /**
+     * Sorts the scrap list by distance along the given direction, i.e. by
+     * position when filling towards the end and by reversed position when
+     * filling towards the start. Each entry packs the sort key in the high
+     * bits and the index into mScrapHolders in the low bits, so that holders
+     * with the same position keep their scrap list order.
+     *
+     * @return the number of indexed scrap views.
+     */
+    private int indexScrapList(List<ViewHolder> scrapList, Direction direction) {
         final int scrapCount = scrapList.size();
+        if (mScrapIndex.length < scrapCount) {
+            mScrapIndex = new long[scrapCount];
+            mScrapHolders = new ViewHolder[scrapCount];
+        }
 
-        ViewHolder closest = null;
-        int closestDistance = Integer.MAX_VALUE;
-
+        final int sign = (direction == Direction.END ? 1 : -1);
         for (int i = 0; i < scrapCount; i++) {
             final ViewHolder holder = scrapList.get(i);
-
-            final int distance = holder.getPosition() - position;
-            if ((distance < 0 && direction == Direction.END) ||
-                    (distance > 0 && direction == Direction.START)) {
-                continue;
-            }
-
-            final int absDistance = Math.abs(distance);
-            if (absDistance < closestDistance) {
-                closest = holder;
-                closestDistance = absDistance;
-
-                if (distance == 0) {
-                    break;
-                }
-            }
-        }
-
-        if (closest != null) {
-            return closest.itemView;
+            mScrapHolders[i] = holder;
+            mScrapIndex[i] = ((long) (sign * holder.getPosition()) << 32) | i;
         }
 
-        return null;
+        Arrays.sort(mScrapIndex, 0, scrapCount);
+        return scrapCount;
     }
 
     private void fillFromScrapList(List<ViewHolder> scrapList, Direction direction) {
@@ -445,11 +516,30 @@ public abstract class TwoWayLayoutManager extends LayoutManager {
             position = firstPosition - 1;
         }
 
-        View scrapChild;
-        while ((scrapChild = findNextScrapView(scrapList, direction, position)) != null) {
-            setupChild(scrapChild, direction);
-            position += (direction == Direction.END ? 1 : -1);
+        final int scrapCount = indexScrapList(scrapList, direction);
+        final int sign = (direction == Direction.END ? 1 : -1);
+
+        // Laying out a scrap view doesn't remove it from the scrap list, e.g.
+        // disappearing views are never added back. So, like a linear scan of
+        // the list, the nearest scrap view at or after the current position is
+        // picked again until the position moves past it. Entries before the
+        // cursor are behind the current position.
+        int cursor = 0;
+        while (true) {
+            while (cursor < scrapCount && (int) (mScrapIndex[cursor] >> 32) < sign * position) {
+                cursor++;
+            }
+
+            if (cursor == scrapCount) {
+                break;
+            }
+
+            final ViewHolder holder = mScrapHolders[(int) mScrapIndex[cursor]];
+            setupChild(holder.itemView, direction);
+            position += sign;
         }
+
+        Arrays.fill(mScrapHolders, 0, scrapCount, null);
     }
 
     private void setupChild(View child, Direction direction) {
@@ -459,12 +549,25 @@ public abstract class TwoWayLayoutManager extends LayoutManager {
             itemSelection.setViewChecked(child, itemSelection.isItemChecked(position));
         }*/
 
-        measureChild(child, direction);
+        if (mMetricsDepth > 0) {
+            final long startTime = System.nanoTime();
+            measureChild(child, direction);
+            mMetrics.mMeasureNanos += System.nanoTime() - startTime;
+        } else {
+            measureChild(child, direction);
+        }
+
         layoutChild(child, direction);
     }
 
     private View makeAndAddView(int position, Direction direction, Recycler recycler) {
+        final long startTime = (mMetricsDepth > 0 ? System.nanoTime() : 0);
+
         final View child = recycler.getViewForPosition(position);
+        if (mTracer != null) {
+            mTracer.onBindView(position);
+        }
+
         final boolean isItemRemoved = ((LayoutParams) child.getLayoutParams()).isItemRemoved();
 
         if (!isItemRemoved) {
@@ -477,6 +580,11 @@ public abstract class TwoWayLayoutManager extends LayoutManager {
             updateLayoutEdgesFromNewChild(child);
         }
 
+        if (mMetricsDepth > 0) {
+            mMetrics.mViewsAdded++;
+            mMetrics.mFillNanos += System.nanoTime() - startTime;
+        }
+
         return child;
     }
 
@@ -581,6 +689,279 @@ public abstract class TwoWayLayoutManager extends LayoutManager {
         }
     }
 
+    private void updateScrollVelocity(int delta) {
+        final long now = SystemClock.uptimeMillis();
+        final long elapsed = now - mLastScrollTime;
+
+        if (elapsed > VELOCITY_WINDOW_MS || (delta > 0) != (mScrollVelocity > 0)) {
+            // First delta of a new scroll, or a change of direction.
+            mScrollVelocity = (delta > 0 ? 1 : -1);
+        } else {
+            mScrollVelocity = (int) (delta * 1000L / Math.max(1L, elapsed));
+        }
+
+        mLastScrollTime = now;
+    }
+
+    /**
+     * Returns the extra space to lay out ahead of the visible area in the
+     * given direction so that upcoming items are bound before they scroll
+     * into view. Nothing is laid out ahead unless the list is being scrolled
+     * quickly in that direction or a key is being held down towards it; the
+     * window then grows with the scroll velocity up to the prefetch budget.
+     *
+     * @see #setPrefetchItemCount(int)
+     * @see #setKeyRepeatDirection(Direction)
+     */
+    protected int getPrefetchSpace(Direction direction) {
+        final int childCount = getChildCount();
+        if (mPrefetchItemCount <= 0 || childCount == 0) {
+            return 0;
+        }
+
+        final int velocity = (direction == Direction.END ? mScrollVelocity : -mScrollVelocity);
+        final boolean keyRepeating = (mKeyRepeatDirection == direction);
+        if (!keyRepeating && velocity < PREFETCH_MIN_VELOCITY) {
+            return 0;
+        }
+
+        final View edgeChild = getChildAt(direction == Direction.END ? childCount - 1 : 0);
+        final int itemSize = Math.max(1, getChildEnd(edgeChild) - getChildStart(edgeChild));
+
+        final int itemCount;
+        if (keyRepeating) {
+            itemCount = mPrefetchItemCount;
+        } else {
+            final int lookahead = (int) ((long) velocity * PREFETCH_LOOKAHEAD_MS / 1000);
+            itemCount = Math.min(mPrefetchItemCount, lookahead / itemSize + 1);
+        }
+
+        return itemCount * itemSize;
+    }
+
+    /**
+     * Sets how many items, along the scroll axis, may be laid out ahead of the
+     * visible area while scrolling. 0 disables the prefetch window.
+     */
+    public void setPrefetchItemCount(int itemCount) {
+        if (itemCount < 0) {
+            throw new IllegalArgumentException("Prefetch item count must not be negative");
+        }
+
+        mPrefetchItemCount = itemCount;
+    }
+
+    public int getPrefetchItemCount() {
+        return mPrefetchItemCount;
+    }
+
+    /**
+     * Installs a tracer receiving the layout, fill, recycle and bind events of
+     * this layout manager, or removes it when null.
+     */
+    public void setLayoutTracer(LayoutTracer tracer) {
+        mTracer = tracer;
+    }
+
+    public LayoutTracer getLayoutTracer() {
+        return mTracer;
+    }
+
+    /**
+     * Starts recording the metrics of a layout pass or scroll, if a tracer is
+     * installed. Must be paired with {@link #endLayoutMetrics()}.
+     */
+    protected void beginLayoutMetrics(int pass) {
+        if (mTracer == null && mMetricsDepth == 0) {
+            return;
+        }
+
+        if (mMetricsDepth++ == 0) {
+            mMetrics.reset(pass);
+            mMetricsFindLaneStart = getFindLaneCount();
+            mMetricsStartTime = System.nanoTime();
+        }
+    }
+
+    /**
+     * Ends the pass started by {@link #beginLayoutMetrics(int)}, delivering
+     * the metrics to the tracer once the outermost pass ends.
+     */
+    protected void endLayoutMetrics() {
+        if (mMetricsDepth == 0 || --mMetricsDepth > 0) {
+            return;
+        }
+
+        mMetrics.mTotalNanos = System.nanoTime() - mMetricsStartTime;
+        mMetrics.mFindLaneCalls = getFindLaneCount() - mMetricsFindLaneStart;
+
+        if (mTracer != null) {
+            mTracer.onLayoutMetrics(mMetrics);
+        }
+    }
+
+    /**
+     * Returns the metrics being recorded, or null outside of a recorded pass.
+     */
+    protected LayoutMetrics getLayoutMetrics() {
+        return (mMetricsDepth > 0 ? mMetrics : null);
+    }
+
+    /**
+     * Returns the total number of lane searches made by this layout so far,
+     * used to count them per pass.
+     */
+    protected int getFindLaneCount() {
+        return 0;
+    }
+
+    /**
+     * Tells the layout that a key moving the focus in the given direction is
+     * being held down, or null once it's released. Items are laid out ahead
+     * in that direction until then.
+     */
+    public void setKeyRepeatDirection(Direction direction) {
+        mKeyRepeatDirection = direction;
+    }
+
+    /**
+     * Whether there's a direction to prefetch towards, i.e. a key is being
+     * held down or the list was scrolled within the velocity window.
+     */
+    public boolean hasPrefetchDirection() {
+        return (mKeyRepeatDirection != null || (mScrollVelocity != 0 &&
+                SystemClock.uptimeMillis() - mLastScrollTime <= VELOCITY_WINDOW_MS));
+    }
+
+    /**
+     * Returns how many adapter positions {@link #collectPrefetchPositions(int[])}
+     * reports ahead of the current scroll direction.
+     */
+    protected int getPrefetchPositionCount() {
+        return mPrefetchItemCount;
+    }
+
+    /**
+     * Writes the positions the layout expects to show next into outPositions,
+     * nearest first, following the key repeat or scroll direction (towards the
+     * end by default).
+     *
+     * @return the number of positions written.
+     */
+    public int collectPrefetchPositions(int[] outPositions) {
+        final int childCount = getChildCount();
+        if (childCount == 0) {
+            return 0;
+        }
+
+        final Direction direction;
+        if (mKeyRepeatDirection != null) {
+            direction = mKeyRepeatDirection;
+        } else {
+            direction = (mScrollVelocity < 0 ? Direction.START : Direction.END);
+        }
+
+        int position;
+        int count;
+        if (direction == Direction.END) {
+            position = getLastVisiblePosition() + 1;
+            count = getItemCount() - position;
+        } else {
+            position = getFirstVisiblePosition() - 1;
+            count = position + 1;
+        }
+
+        count = Math.max(0, Math.min(count,
+                Math.min(outPositions.length, getPrefetchPositionCount())));
+
+        for (int i = 0; i < count; i++) {
+            outPositions[i] = position;
+            position += (direction == Direction.END ? 1 : -1);
+        }
+
+        return count;
+    }
+
+    /**
+     * Creates and binds the view for the given position outside of a layout
+     * pass and hands it back to the recycler, where it stays in the view cache
+     * (see {@link RecyclerView#setItemViewCacheSize(int)}) until the position
+     * is laid out. Positions that are attached or were already prefetched
+     * since the last layout are skipped.
+     *
+     * Must not be called while the adapter has pending updates.
+     *
+     * @return whether a view was created and bound.
+     */
+    public boolean prefetchPosition(int position) {
+        if (mRecycler == null || position < 0 || position >= getItemCount() ||
+                findViewByPosition(position) != null) {
+            return false;
+        }
+
+        for (int i = 0; i < mPrefetchedCount; i++) {
+            if (mPrefetchedPositions[i] == position) {
+                return false;
+            }
+        }
+
+        final View child = mRecycler.getViewForPosition(position);
+        mRecycler.recycleView(child);
+
+        // Remember the most recent positions only, the view cache drops the
+        // oldest views first as well.
+        final int capacity = Math.max(1, getPrefetchPositionCount());
+        if (mPrefetchedPositions.length != capacity) {
+            mPrefetchedPositions = new int[capacity];
+            clearPrefetchedPositions();
+        }
+
+        mPrefetchedPositions[mPrefetchedNext] = position;
+        mPrefetchedNext = (mPrefetchedNext + 1) % capacity;
+        mPrefetchedCount = Math.min(mPrefetchedCount + 1, capacity);
+
+        return true;
+    }
+
+    /**
+     * Maps a focus direction (one of {@link View#FOCUS_UP}, {@link View#FOCUS_DOWN},
+     * {@link View#FOCUS_LEFT} or {@link View#FOCUS_RIGHT}) to a layout direction
+     * along the scroll axis, or returns null if it moves across it.
+     */
+    protected Direction getFocusScrollDirection(int focusDirection) {
+        switch (focusDirection) {
+            case View.FOCUS_DOWN:
+                return (mIsVertical ? Direction.END : null);
+
+            case View.FOCUS_UP:
+                return (mIsVertical ? Direction.START : null);
+
+            case View.FOCUS_RIGHT:
+                return (mIsVertical ? null : Direction.END);
+
+            case View.FOCUS_LEFT:
+                return (mIsVertical ? null : Direction.START);
+
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the adapter position that should take focus when moving from
+     * the given position in the given focus direction, whether or not it's
+     * attached, or {@link RecyclerView#NO_POSITION} if the layout can't tell
+     * without looking at the child views.
+     */
+    public int findNextFocusPosition(int position, int focusDirection) {
+        return RecyclerView.NO_POSITION;
+    }
+
+    private void clearPrefetchedPositions() {
+        mPrefetchedCount = 0;
+        mPrefetchedNext = 0;
+    }
+
     private Bundle getPendingItemSelectionState() {
         if (mPendingSavedState != null) {
             return mPendingSavedState.itemSelectionState;
@@ -694,10 +1075,21 @@ public abstract class TwoWayLayoutManager extends LayoutManager {
         mLayoutStart = getStartWithPadding();
     }
 
+    @Override
+    public void onScrollStateChanged(int state) {
+        super.onScrollStateChanged(state);
+
+        if (state == RecyclerView.SCROLL_STATE_IDLE) {
+            mScrollVelocity = 0;
+        }
+    }
+
     @Override
     public void onDetachedFromWindow(RecyclerView view, Recycler recycler) {
         super.onDetachedFromWindow(view, recycler);
         mRecyclerView = null;
+        mRecycler = null;
+        clearPrefetchedPositions();
     }
 
     @Override
@@ -724,6 +1116,15 @@ public abstract class TwoWayLayoutManager extends LayoutManager {
             }
         }*/
 
+        mRecycler = recycler;
+        clearPrefetchedPositions();
+
+        if (mTracer != null) {
+            mTracer.onLayoutStart(state.getItemCount());
+        }
+
+        beginLayoutMetrics(LayoutMetrics.PASS_LAYOUT);
+
         final int anchorItemPosition = getAnchorItemPosition(state);
         detachAndScrapAttachedViews(recycler);
         fillSpecific(anchorItemPosition, recycler, state);
@@ -732,6 +1133,12 @@ public abstract class TwoWayLayoutManager extends LayoutManager {
 
         setPendingScrollPositionWithOffset(RecyclerView.NO_POSITION, 0);
         mPendingSavedState = null;
+
+        endLayoutMetrics();
+
+        if (mTracer != null) {
+            mTracer.onLayoutEnd(getChildCount());
+        }
     }
 
     protected void onLayoutScrapList(Recycler recycler, State state) {
@@ -1057,14 +1464,11 @@ public abstract class TwoWayLayoutManager extends LayoutManager {
         childLeftPx -= getPaddingLeft();
         childRightPx -= getPaddingRight();
         int childWidthHalf = childWidth / 2;
-        Log.i(LOGTAG, "target-->left:" + childLeftPx + "   right:" + childRightPx + "   childWidthHalf:"+childWidthHalf);
 
         if(childLeftPx < childWidth) {
             mRecyclerView.smoothScrollBy(-(childWidth /2 *3), 0);
-            Log.i(LOGTAG,"向左移动...");
         } else if(childRightPx < childWidth) {
             mRecyclerView.smoothScrollBy((childWidth /2 *3), 0);
-            Log.i(LOGTAG,"向右移动...");
         }
         
 //        int centerLeft = parentWidth/2-childWidth/2;//计算子view居中后相对于父view的左边距
@@ -18,6 +18,7 @@ package com.owen.tvrecyclerview.widget;
 
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.RecyclerView.Recycler;
 import android.support.v7.widget.RecyclerView.State;
 import android.util.AttributeSet;
@@ -80,12 +81,63 @@ public class GridLayoutManager extends BaseLayoutManager {
         return (isVertical() ? mNumColumns : mNumRows);
     }
 
+    @Override
+    public boolean isLastChildInLane(int position, int itemCount) {
+        if (!hasPositionalLanes()) {
+            return super.isLastChildInLane(position, itemCount);
+        }
+
+        return (position >= itemCount - getLaneCount());
+    }
+
     @Override
     public void getLaneForPosition(LaneInfo outInfo, int position, Direction direction) {
         final int lane = (position % getLaneCount());
         outInfo.set(lane, lane);
     }
 
+    /**
+     * Whether every item takes a single lane, so that lanes follow from the
+     * positions alone. Subclasses with items spanning several lanes rely on
+     * the cached item lanes instead.
+     */
+    boolean hasPositionalLanes() {
+        return true;
+    }
+
+    @Override
+    public int findNextFocusPosition(int position, int focusDirection) {
+        if (!hasPositionalLanes()) {
+            return super.findNextFocusPosition(position, focusDirection);
+        }
+
+        final int laneCount = getLaneCount();
+        final int itemCount = getItemCount();
+
+        final Direction direction = getFocusScrollDirection(focusDirection);
+        if (direction == Direction.END) {
+            final int target = position + laneCount;
+            if (target < itemCount) {
+                return target;
+            }
+
+            // The last row may not fill every lane.
+            final int lastRowStart = (itemCount - 1) - (itemCount - 1) % laneCount;
+            return (position < lastRowStart ? itemCount - 1 : RecyclerView.NO_POSITION);
+        } else if (direction == Direction.START) {
+            final int target = position - laneCount;
+            return (target >= 0 ? target : RecyclerView.NO_POSITION);
+        }
+
+        final int lane = position % laneCount;
+        if (focusDirection == View.FOCUS_RIGHT || focusDirection == View.FOCUS_DOWN) {
+            return (lane < laneCount - 1 && position + 1 < itemCount ?
+                    position + 1 : RecyclerView.NO_POSITION);
+        } else {
+            return (lane > 0 ? position - 1 : RecyclerView.NO_POSITION);
+        }
+    }
+
     @Override
     protected void moveLayoutToPosition(int position, int offset, Recycler recycler, State state) {
         final Lanes lanes = getLanes();
@@ -2,9 +2,9 @@ package com.owen.tvrecyclerview.widget;
 
 import android.graphics.Rect;
 import android.support.v7.widget.RecyclerView;
-import android.util.Log;
 
 import com.owen.tvrecyclerview.BaseLayoutManager;
+import com.owen.tvrecyclerview.DecorationIndex;
 import com.owen.tvrecyclerview.Lanes;
 import com.owen.tvrecyclerview.Lanes.LaneInfo;
 import com.owen.tvrecyclerview.TwoWayLayoutManager.Direction;
@@ -63,6 +63,12 @@ public class ItemSpacingOffsets {
             return false;
         }
 
+        final DecorationIndex index = lm.getDecorationIndex();
+        final int cached = index.getFlag(itemPosition, DecorationIndex.FLAG_SECOND_LANE);
+        if (cached != DecorationIndex.UNKNOWN) {
+            return (cached == 1);
+        }
+
         int previousLane = Lanes.NO_LANE;
         int previousPosition = itemPosition - 1;
         while (previousPosition >= 0) {
@@ -76,11 +82,14 @@ public class ItemSpacingOffsets {
         }
 
         final int previousLaneSpan = lm.getLaneSpanForPosition(previousPosition);
-        if (previousLane == 0) {
-            return (lane == previousLane + previousLaneSpan);
+        final boolean secondLane = (previousLane == 0 && lane == previousLane + previousLaneSpan);
+
+        // Lanes that aren't known yet would give a different answer later.
+        if (lane != Lanes.NO_LANE && previousLane != Lanes.NO_LANE) {
+            index.setFlag(itemPosition, DecorationIndex.FLAG_SECOND_LANE, secondLane);
         }
 
-        return false;
+        return secondLane;
     }
 
     /**
@@ -92,35 +101,31 @@ public class ItemSpacingOffsets {
             return false;
         }
 
+        final DecorationIndex index = lm.getDecorationIndex();
+        final int cached = index.getFlag(itemPosition, DecorationIndex.FLAG_FIRST_ROW);
+        if (cached != DecorationIndex.UNKNOWN) {
+            return (cached == 1);
+        }
+
+        boolean firstRow = true;
         int count = 0;
         for (int i = 0; i < itemPosition; i++) {
             count += lm.getLaneSpanForPosition(i);
             if (count >= laneCount) {
-                return false;
+                firstRow = false;
+                break;
             }
         }
 
-        return true;
+        index.setFlag(itemPosition, DecorationIndex.FLAG_FIRST_ROW, firstRow);
+        return firstRow;
     }
 
     /**
      * Checks whether the given position is placed at the end of a layout lane.
      */
     public static boolean isLastChildInLane(BaseLayoutManager lm, int itemPosition, int itemCount) {
-        final int laneCount = lm.getLanes().getCount();
-        Log.d("ItemSpacingOffsets", "isLastChildInLane...itemPosition=" + itemPosition + " , itemCount=" + itemCount + " , laneCount=" + laneCount);
-        if (itemPosition < itemCount - laneCount) {
-            return false;
-        }
-
-        // TODO: Figure out a robust way to compute this for layouts
-        // that are dynamically placed and might span multiple lanes.
-        if (lm instanceof SpannableGridLayoutManager || lm instanceof StaggeredGridLayoutManager) {
-            
-            return false;
-        }
-
-        return true;
+        return lm.isLastChildInLane(itemPosition, itemCount);
     }
 
     public void setAddSpacingAtEnd(boolean spacingAtEnd) {
@@ -45,6 +45,11 @@ public class ListLayoutManager extends BaseLayoutManager {
         return 1;
     }
 
+    @Override
+    public boolean isLastChildInLane(int position, int itemCount) {
+        return (position == itemCount - 1);
+    }
+
     @Override
     public void getLaneForPosition(LaneInfo outInfo, int position, Direction direction) {
         outInfo.set(0, 0);
@@ -6,7 +6,6 @@ import android.graphics.Rect;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.RecyclerView.ItemDecoration;
 import android.util.AttributeSet;
-import android.util.Log;
 
 import com.owen.tvrecyclerview.R;
 
@@ -45,10 +44,5 @@ public class SpacingItemDecoration extends ItemDecoration {
     @Override
     public void getItemOffsets(Rect outRect, int itemPosition, RecyclerView parent) {
         mItemSpacing.getItemOffsets(outRect, itemPosition, parent);
-        Log.e("SpacingItemDecoration", "itemPosition=" + itemPosition + " , outRect.right"+ outRect.right 
-                + " , outRect.left="+outRect.left
-                + " , outRect.top="+outRect.top
-                + " , outRect.bottom="+outRect.bottom
-        );
     }
 }
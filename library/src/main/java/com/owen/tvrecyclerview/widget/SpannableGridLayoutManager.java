@@ -18,8 +18,6 @@ package com.owen.tvrecyclerview.widget;
 
 import android.content.Context;
 import android.content.res.TypedArray;
-import android.os.Parcel;
-import android.os.Parcelable;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.RecyclerView.Recycler;
 import android.support.v7.widget.RecyclerView.State;
@@ -28,10 +26,10 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewGroup.MarginLayoutParams;
 
-import com.owen.tvrecyclerview.BaseLayoutManager;
 import com.owen.tvrecyclerview.Lanes;
 import com.owen.tvrecyclerview.Lanes.LaneInfo;
 import com.owen.tvrecyclerview.R;
+import com.owen.tvrecyclerview.SpanSizeLookup;
 
 public class SpannableGridLayoutManager extends GridLayoutManager {
     public static final String LOGTAG = "SpannableGridLM";
@@ -39,43 +37,6 @@ public class SpannableGridLayoutManager extends GridLayoutManager {
     private static final int DEFAULT_NUM_COLS = 3;
     private static final int DEFAULT_NUM_ROWS = 3;
 
-    public static class SpannableItemEntry extends BaseLayoutManager.ItemEntry {
-        private final int colSpan;
-        private final int rowSpan;
-
-        public SpannableItemEntry(int startLane, int anchorLane, int colSpan, int rowSpan) {
-            super(startLane, anchorLane);
-            this.colSpan = colSpan;
-            this.rowSpan = rowSpan;
-        }
-
-        public SpannableItemEntry(Parcel in) {
-            super(in);
-            this.colSpan = in.readInt();
-            this.rowSpan = in.readInt();
-        }
-
-        @Override
-        public void writeToParcel(Parcel out, int flags) {
-            super.writeToParcel(out, flags);
-            out.writeInt(colSpan);
-            out.writeInt(rowSpan);
-        }
-
-        public static final Parcelable.Creator<SpannableItemEntry> CREATOR
-                = new Parcelable.Creator<SpannableItemEntry>() {
-            @Override
-            public SpannableItemEntry createFromParcel(Parcel in) {
-                return new SpannableItemEntry(in);
-            }
-
-            @Override
-            public SpannableItemEntry[] newArray(int size) {
-                return new SpannableItemEntry[size];
-            }
-        };
-    }
-
     private boolean mMeasuring;
 
     public SpannableGridLayoutManager(Context context) {
@@ -98,10 +59,6 @@ public class SpannableGridLayoutManager extends GridLayoutManager {
         return (isVertical ? lp.colSpan : lp.rowSpan);
     }
 
-    private static int getLaneSpan(SpannableItemEntry entry, boolean isVertical) {
-        return (isVertical ? entry.colSpan : entry.rowSpan);
-    }
-
     @Override
     public boolean canScrollHorizontally() {
         return super.canScrollHorizontally() && !mMeasuring;
@@ -119,8 +76,13 @@ public class SpannableGridLayoutManager extends GridLayoutManager {
 
     @Override
     public int getLaneSpanForPosition(int position) {
-        final SpannableItemEntry entry = (SpannableItemEntry) getItemEntryForPosition(position);
-        if (entry == null) {
+        final int span = getItemSpanForPosition(position);
+        if (span == 0) {
+            final SpanSizeLookup lookup = getSpanSizeLookup();
+            if (lookup != null) {
+                return (isVertical() ? getColSpan(lookup, position) : getRowSpan(lookup, position));
+            }
+
             // add by zhousuqiang
             View view = getChildAt(position - getFirstVisiblePosition());
             if(null != view) {
@@ -129,7 +91,7 @@ public class SpannableGridLayoutManager extends GridLayoutManager {
             throw new IllegalStateException("Could not find span for position " + position);
         }
 
-        return getLaneSpan(entry, isVertical());
+        return span;
     }
     
     // add by zhousuqiang
@@ -147,14 +109,13 @@ public class SpannableGridLayoutManager extends GridLayoutManager {
 //    }
 
     @Override
-    public void getLaneForPosition(LaneInfo outInfo, int position, Direction direction) {
-        final SpannableItemEntry entry = (SpannableItemEntry) getItemEntryForPosition(position);
-        if (entry != null) {
-            outInfo.set(entry.startLane, entry.anchorLane);
-            return;
-        }
+    boolean hasPositionalLanes() {
+        return false;
+    }
 
-        outInfo.setUndefined();
+    @Override
+    public void getLaneForPosition(LaneInfo outInfo, int position, Direction direction) {
+        getItemLaneForPosition(outInfo, position);
     }
 
     @Override
@@ -165,6 +126,24 @@ public class SpannableGridLayoutManager extends GridLayoutManager {
         }
     }
 
+    private int getColSpan(SpanSizeLookup lookup, int position) {
+        final int colSpan = Math.max(1, lookup.getCachedColSpan(position));
+        return (isVertical() ? Math.min(colSpan, getLaneCount()) : colSpan);
+    }
+
+    private int getRowSpan(SpanSizeLookup lookup, int position) {
+        final int rowSpan = Math.max(1, lookup.getCachedRowSpan(position));
+        return (isVertical() ? rowSpan : Math.min(rowSpan, getLaneCount()));
+    }
+
+    private void applySpanSizeLookup(int position, LayoutParams lp) {
+        final SpanSizeLookup lookup = getSpanSizeLookup();
+        if (lookup != null) {
+            lp.colSpan = getColSpan(lookup, position);
+            lp.rowSpan = getRowSpan(lookup, position);
+        }
+    }
+
     private int getChildWidth(int colSpan) {
         return (getLanes().getLaneSize()) * colSpan;
     }
@@ -228,66 +207,52 @@ public class SpannableGridLayoutManager extends GridLayoutManager {
 
     @Override
     protected void moveLayoutToPosition(int position, int offset, Recycler recycler, State state) {
-        final boolean isVertical = isVertical();
         final Lanes lanes = getLanes();
 
-        lanes.reset(0);
-
-        for (int i = 0; i <= position; i++) {
-            SpannableItemEntry entry = (SpannableItemEntry) getItemEntryForPosition(i);
-            if (entry == null) {
-                final View child = recycler.getViewForPosition(i);
-                entry = (SpannableItemEntry) cacheChildLaneAndSpan(child, Direction.END);
-            }
-
-            mTempLaneInfo.set(entry.startLane, entry.anchorLane);
-
-            // The lanes might have been invalidated because an added or
-            // removed item. See BaseLayoutManager.invalidateItemLanes().
-            if (mTempLaneInfo.isUndefined()) {
-                lanes.findLane(mTempLaneInfo, getLaneSpanForPosition(i), Direction.END);
-                entry.setLane(mTempLaneInfo);
-            }
-
-            lanes.getChildFrame(mTempRect, getChildWidth(entry.colSpan),
-                    getChildHeight(entry.rowSpan), mTempLaneInfo, Direction.END);
-
-            if (i != position) {
-                pushChildFrame(entry, mTempRect, entry.startLane, getLaneSpan(entry, isVertical),
-                        Direction.END);
-            }
-        }
+        replayItemEntries(position, recycler, mTempLaneInfo, mTempRect);
 
         lanes.getLane(mTempLaneInfo.startLane, mTempRect);
         lanes.reset(Direction.END);
-        lanes.offset(offset - (isVertical ? mTempRect.bottom : mTempRect.right));
+        lanes.offset(offset - (isVertical() ? mTempRect.bottom : mTempRect.right));
     }
 
     @Override
-    protected ItemEntry cacheChildLaneAndSpan(View child, Direction direction) {
-        final int position = getPosition(child);
+    protected void createItemEntryForPosition(int position, Recycler recycler) {
+        final SpanSizeLookup lookup = getSpanSizeLookup();
+        if (lookup != null) {
+            // The spans are known without binding a view, the lane
+            // is found by the replay.
+            final int colSpan = getColSpan(lookup, position);
+            final int rowSpan = getRowSpan(lookup, position);
+
+            mTempLaneInfo.setUndefined();
+            putItemEntryForPosition(position, mTempLaneInfo, isVertical() ? colSpan : rowSpan,
+                    getChildWidth(colSpan), getChildHeight(rowSpan));
+        } else {
+            final View child = recycler.getViewForPosition(position);
+            cacheChildLaneAndSpan(child, Direction.END);
+        }
+    }
 
-        mTempLaneInfo.setUndefined();
+    @Override
+    protected void cacheChildLaneAndSpan(View child, Direction direction) {
+        final int position = getPosition(child);
+        final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+        applySpanSizeLookup(position, lp);
 
-        SpannableItemEntry entry = (SpannableItemEntry) getItemEntryForPosition(position);
-        if (entry != null) {
-            mTempLaneInfo.set(entry.startLane, entry.anchorLane);
-        }
+        final boolean hasEntry = hasItemEntryForPosition(position);
+        getItemLaneForPosition(mTempLaneInfo, position, direction);
 
         if (mTempLaneInfo.isUndefined()) {
-            getLaneForChild(mTempLaneInfo, child, direction);
+            getLanes().findLane(mTempLaneInfo, getLaneSpanForChild(child), direction);
         }
 
-        if (entry == null) {
-            final LayoutParams lp = (LayoutParams) child.getLayoutParams();
-            entry = new SpannableItemEntry(mTempLaneInfo.startLane, mTempLaneInfo.anchorLane,
-                    lp.colSpan, lp.rowSpan);
-            setItemEntryForPosition(position, entry);
+        if (!hasEntry) {
+            putItemEntryForPosition(position, mTempLaneInfo, getLaneSpan(lp, isVertical()),
+                    getChildWidth(lp.colSpan), getChildHeight(lp.rowSpan));
         } else {
-            entry.setLane(mTempLaneInfo);
+            setItemLaneForPosition(position, mTempLaneInfo);
         }
-
-        return entry;
     }
 
     @Override
@@ -19,8 +19,6 @@ package com.owen.tvrecyclerview.widget;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Rect;
-import android.os.Parcel;
-import android.os.Parcelable;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.RecyclerView.Recycler;
 import android.support.v7.widget.RecyclerView.State;
@@ -28,10 +26,10 @@ import android.util.AttributeSet;
 import android.view.View;
 import android.view.ViewGroup;
 
-import com.owen.tvrecyclerview.BaseLayoutManager;
 import com.owen.tvrecyclerview.Lanes;
 import com.owen.tvrecyclerview.Lanes.LaneInfo;
 import com.owen.tvrecyclerview.R;
+import com.owen.tvrecyclerview.SpanSizeLookup;
 
 
 public class StaggeredGridLayoutManager extends GridLayoutManager {
@@ -40,45 +38,6 @@ public class StaggeredGridLayoutManager extends GridLayoutManager {
     private static final int DEFAULT_NUM_COLS = 2;
     private static final int DEFAULT_NUM_ROWS = 2;
 
-    protected static class StaggeredItemEntry extends BaseLayoutManager.ItemEntry {
-        private final int span;
-        private int width;
-        private int height;
-
-        public StaggeredItemEntry(int startLane, int anchorLane, int span) {
-            super(startLane, anchorLane);
-            this.span = span;
-        }
-
-        public StaggeredItemEntry(Parcel in) {
-            super(in);
-            this.span = in.readInt();
-            this.width = in.readInt();
-            this.height = in.readInt();
-        }
-
-        @Override
-        public void writeToParcel(Parcel out, int flags) {
-            super.writeToParcel(out, flags);
-            out.writeInt(span);
-            out.writeInt(width);
-            out.writeInt(height);
-        }
-
-        public static final Parcelable.Creator<StaggeredItemEntry> CREATOR
-                = new Parcelable.Creator<StaggeredItemEntry>() {
-            @Override
-            public StaggeredItemEntry createFromParcel(Parcel in) {
-                return new StaggeredItemEntry(in);
-            }
-
-            @Override
-            public StaggeredItemEntry[] newArray(int size) {
-                return new StaggeredItemEntry[size];
-            }
-        };
-    }
-
     public StaggeredGridLayoutManager(Context context) {
         this(context, null);
     }
@@ -103,8 +62,13 @@ public class StaggeredGridLayoutManager extends GridLayoutManager {
 
     @Override
     public int getLaneSpanForPosition(int position) {
-        final StaggeredItemEntry entry = (StaggeredItemEntry) getItemEntryForPosition(position);
-        if (entry == null) {
+        final int span = getItemSpanForPosition(position);
+        if (span == 0) {
+            final SpanSizeLookup lookup = getSpanSizeLookup();
+            if (lookup != null) {
+                return getLaneSpan(lookup, position);
+            }
+
             View view = getChildAt(position - getFirstVisiblePosition());
             if(null != view) {
                 return getLaneSpanForChild(view);
@@ -112,18 +76,22 @@ public class StaggeredGridLayoutManager extends GridLayoutManager {
             throw new IllegalStateException("Could not find span for position " + position);
         }
 
-        return entry.span;
+        return span;
+    }
+
+    private int getLaneSpan(SpanSizeLookup lookup, int position) {
+        final int span = lookup.getLaneSpan(position, isVertical());
+        return Math.max(1, Math.min(span, getLaneCount()));
     }
 
     @Override
-    public void getLaneForPosition(LaneInfo outInfo, int position, Direction direction) {
-        final StaggeredItemEntry entry = (StaggeredItemEntry) getItemEntryForPosition(position);
-        if (entry != null) {
-            outInfo.set(entry.startLane, entry.anchorLane);
-            return;
-        }
+    boolean hasPositionalLanes() {
+        return false;
+    }
 
-        outInfo.setUndefined();
+    @Override
+    public void getLaneForPosition(LaneInfo outInfo, int position, Direction direction) {
+        getItemLaneForPosition(outInfo, position);
     }
 
     @Override
@@ -136,97 +104,64 @@ public class StaggeredGridLayoutManager extends GridLayoutManager {
 
     @Override
     protected void moveLayoutToPosition(int position, int offset, Recycler recycler, State state) {
-        final boolean isVertical = isVertical();
         final Lanes lanes = getLanes();
 
-        lanes.reset(0);
-
-        for (int i = 0; i <= position; i++) {
-            StaggeredItemEntry entry = (StaggeredItemEntry) getItemEntryForPosition(i);
+        replayItemEntries(position, recycler, mTempLaneInfo, mTempRect);
 
-            if (entry != null) {
-                mTempLaneInfo.set(entry.startLane, entry.anchorLane);
-
-                // The lanes might have been invalidated because an added or
-                // removed item. See BaseLayoutManager.invalidateItemLanes().
-                if (mTempLaneInfo.isUndefined()) {
-                    lanes.findLane(mTempLaneInfo, getLaneSpanForPosition(i), Direction.END);
-                    entry.setLane(mTempLaneInfo);
-                }
-
-                lanes.getChildFrame(mTempRect, entry.width, entry.height, mTempLaneInfo,
-                        Direction.END);
-            } else {
-                final View child = recycler.getViewForPosition(i);
-
-                // XXX: This might potentially cause stalls in the main
-                // thread if the layout ends up having to measure tons of
-                // child views. We might need to add different policies based
-                // on known assumptions regarding certain layouts e.g. child
-                // views have stable aspect ratio, lane size is fixed, etc.
-                measureChild(child, Direction.END);
-
-                // The measureChild() call ensures an entry is created for
-                // this position.
-                entry = (StaggeredItemEntry) getItemEntryForPosition(i);
+        lanes.getLane(mTempLaneInfo.startLane, mTempRect);
+        lanes.reset(Direction.END);
+        lanes.offset(offset - (isVertical() ? mTempRect.bottom : mTempRect.right));
+    }
 
-                mTempLaneInfo.set(entry.startLane, entry.anchorLane);
-                lanes.getChildFrame(mTempRect, getDecoratedMeasuredWidth(child),
-                        getDecoratedMeasuredHeight(child), mTempLaneInfo, Direction.END);
+    @Override
+    protected void createItemEntryForPosition(int position, Recycler recycler) {
+        final View child = recycler.getViewForPosition(position);
 
-                cacheItemFrame(entry, mTempRect);
-            }
+        // XXX: This might potentially cause stalls in the main
+        // thread if the layout ends up having to measure tons of
+        // child views. We might need to add different policies based
+        // on known assumptions regarding certain layouts e.g. child
+        // views have stable aspect ratio, lane size is fixed, etc.
+        measureChild(child, Direction.END);
 
-            if (i != position) {
-                pushChildFrame(entry, mTempRect, entry.startLane, entry.span, Direction.END);
-            }
-        }
-
-        lanes.getLane(mTempLaneInfo.startLane, mTempRect);
-        lanes.reset(Direction.END);
-        lanes.offset(offset - (isVertical ? mTempRect.bottom : mTempRect.right));
+        // The measureChild() call ensures an entry is created for
+        // this position.
+        setItemSizeForPosition(position, getDecoratedMeasuredWidth(child),
+                getDecoratedMeasuredHeight(child));
     }
 
     @Override
-    protected ItemEntry cacheChildLaneAndSpan(View child, Direction direction) {
+    protected void cacheChildLaneAndSpan(View child, Direction direction) {
         final int position = getPosition(child);
 
-        mTempLaneInfo.setUndefined();
-
-        StaggeredItemEntry entry = (StaggeredItemEntry) getItemEntryForPosition(position);
-        if (entry != null) {
-            mTempLaneInfo.set(entry.startLane, entry.anchorLane);
+        final SpanSizeLookup lookup = getSpanSizeLookup();
+        if (lookup != null) {
+            ((LayoutParams) child.getLayoutParams()).span = getLaneSpan(lookup, position);
         }
 
+        final boolean hasEntry = hasItemEntryForPosition(position);
+        getItemLaneForPosition(mTempLaneInfo, position, direction);
+
         if (mTempLaneInfo.isUndefined()) {
-            getLaneForChild(mTempLaneInfo, child, direction);
+            getLanes().findLane(mTempLaneInfo, getLaneSpanForChild(child), direction);
         }
 
-        if (entry == null) {
-            entry = new StaggeredItemEntry(mTempLaneInfo.startLane, mTempLaneInfo.anchorLane,
-                    getLaneSpanForChild(child));
-            setItemEntryForPosition(position, entry);
+        if (!hasEntry) {
+            putItemEntryForPosition(position, mTempLaneInfo, getLaneSpanForChild(child), 0, 0);
         } else {
-            entry.setLane(mTempLaneInfo);
+            setItemLaneForPosition(position, mTempLaneInfo);
         }
-
-        return entry;
-    }
-
-    void cacheItemFrame(StaggeredItemEntry entry, Rect childFrame) {
-        entry.width = childFrame.right - childFrame.left;
-        entry.height = childFrame.bottom - childFrame.top;
     }
 
     @Override
-    protected ItemEntry cacheChildFrame(View child, Rect childFrame) {
-        StaggeredItemEntry entry = (StaggeredItemEntry) getItemEntryForPosition(getPosition(child));
-        if (entry == null) {
+    protected void cacheChildFrame(View child, Rect childFrame) {
+        final int position = getPosition(child);
+        if (!hasItemEntryForPosition(position)) {
             throw new IllegalStateException("Tried to cache frame on undefined item");
         }
 
-        cacheItemFrame(entry, childFrame);
-        return entry;
+        setItemSizeForPosition(position, childFrame.right - childFrame.left,
+                childFrame.bottom - childFrame.top);
     }
 
     @Override
@@ -18,19 +18,22 @@ package com.owen.tvrecyclerview.widget;
 
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Canvas;
 import android.graphics.Rect;
 import android.os.Build;
+import android.os.SystemClock;
 import android.support.v4.view.ViewCompat;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.text.TextUtils;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.view.FocusFinder;
 import android.view.KeyEvent;
 import android.view.View;
+import android.view.WindowManager;
 
 import com.owen.tvrecyclerview.BaseLayoutManager;
+import com.owen.tvrecyclerview.LayoutTracer;
 import com.owen.tvrecyclerview.R;
 import com.owen.tvrecyclerview.TwoWayLayoutManager;
 
@@ -40,6 +43,15 @@ public class TvRecyclerView extends RecyclerView {
     private static final String LOGTAG = TvRecyclerView.class.getSimpleName();
     private static final int DEFAULT_SELECTED_ITEM_OFFSET = 40;
 
+    private static final int MAX_PREFETCH_POSITIONS = 32;
+
+    // RecyclerView's default view cache size.
+    private static final int DEFAULT_ITEM_VIEW_CACHE_SIZE = 2;
+    private static final long DEFAULT_FRAME_INTERVAL_MS = 16;
+
+    private static final int KEY_REPEAT_ACCELERATION_THRESHOLD = 10;
+    private static final int DEFAULT_ACCELERATED_KEY_REPEAT_STEPS = 3;
+
     private int mVerticalSpacingWithMargins = 0;
     private int mHorizontalSpacingWithMargins = 0;
     
@@ -48,12 +60,49 @@ public class TvRecyclerView extends RecyclerView {
     
     private boolean mSelectedItemCentered;
     private boolean mIsBaseLayoutManager;
+    private boolean mIsVertical = true;
 
     private int mScrollState = SCROLL_STATE_IDLE;
     private OnItemListener mOnItemListener;
+    private LayoutTracer mLayoutTracer;
     
     private ItemListener mItemListener;
 
+    private final int[] mPrefetchPositions = new int[MAX_PREFETCH_POSITIONS];
+    private final Runnable mPrefetchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            prefetchItems();
+        }
+    };
+    private int mPendingFocusPosition = NO_POSITION;
+    private int mFocusedChildIndex = -1;
+
+    private final Runnable mKeyRepeatRunnable = new Runnable() {
+        @Override
+        public void run() {
+            applyKeyRepeat();
+        }
+    };
+    private boolean mKeyRepeatCoalescingEnabled = true;
+    private boolean mKeyRepeatScheduled;
+    private int mKeyRepeatFocusDirection = -1;
+    private int mKeyRepeatSteps;
+    private int mAcceleratedKeyRepeatSteps = DEFAULT_ACCELERATED_KEY_REPEAT_STEPS;
+
+    private boolean mItemPrefetchEnabled = true;
+    private boolean mPrefetchScheduled;
+    private long mPrefetchDeadline;
+    private long mPrefetchItemCostMs;
+    private long mFrameIntervalMs = DEFAULT_FRAME_INTERVAL_MS;
+
+    // View cache size asked for through setItemViewCacheSize(), and the one
+    // applied, which is raised to hold the prefetched views.
+    private int mItemViewCacheSize = DEFAULT_ITEM_VIEW_CACHE_SIZE;
+    private int mAppliedItemViewCacheSize = DEFAULT_ITEM_VIEW_CACHE_SIZE;
+    // Largest number of views a prefetch pass needed cached so far.
+    private int mPrefetchCacheSize;
+
     private static final Class<?>[] sConstructorSignature = new Class[] {
             Context.class, AttributeSet.class};
 
@@ -119,6 +168,10 @@ public class TvRecyclerView extends RecyclerView {
              */
             @Override
             public void onFocusChange(View itemView, boolean hasFocus) {
+                if (mLayoutTracer != null && itemView != null) {
+                    mLayoutTracer.onItemFocusChanged(getChildLayoutPosition(itemView), hasFocus);
+                }
+
                 if(null != mOnItemListener) {
                     if(null != itemView) {
                         itemView.setSelected(hasFocus);
@@ -162,7 +215,12 @@ public class TvRecyclerView extends RecyclerView {
     @Override
     public void setLayoutManager(LayoutManager layout) {
         mIsBaseLayoutManager = layout instanceof BaseLayoutManager;
+        if (layout instanceof TwoWayLayoutManager) {
+            ((TwoWayLayoutManager) layout).setLayoutTracer(mLayoutTracer);
+        }
+
         super.setLayoutManager(layout);
+        updateOrientation();
     }
 
     /**
@@ -187,6 +245,19 @@ public class TvRecyclerView extends RecyclerView {
     }
 
     private boolean isVertical() {
+        return mIsVertical;
+    }
+
+    /**
+     * Resolves the orientation of the layout manager once, it's read on every
+     * key event. Layout managers request a layout when their orientation
+     * changes, so this is refreshed from onLayout as well.
+     */
+    private void updateOrientation() {
+        mIsVertical = resolveOrientation();
+    }
+
+    private boolean resolveOrientation() {
         if(mIsBaseLayoutManager) {
             BaseLayoutManager layout = (BaseLayoutManager) getLayoutManager();
             return layout.isVertical();
@@ -263,18 +334,12 @@ public class TvRecyclerView extends RecyclerView {
             } else {
                 smoothScrollBy(dx, dy);
             }
-            if(!isVertical()) {
-                if(dx == 0) {
-                    postInvalidate();
-                }
-            } else if (dy == 0) {
-                postInvalidate();
-            }
+            invalidateIfDrawingOrderChanged(child);
             return true;
         }
 
         // 重绘是为了选中item置顶，具体请参考getChildDrawingOrder方法
-        postInvalidate();
+        invalidateIfDrawingOrderChanged(child);
         return false;
     }
     
@@ -319,6 +384,7 @@ public class TvRecyclerView extends RecyclerView {
         if(mIsBaseLayoutManager) {
             BaseLayoutManager layout = (BaseLayoutManager) getLayoutManager();
             layout.setOrientation(orientation);
+            updateOrientation();
         }
     }
 
@@ -356,25 +422,162 @@ public class TvRecyclerView extends RecyclerView {
 //        super.scrollToPosition(position);
 //    }
 
-    int position = 0;
     @Override
-    protected int getChildDrawingOrder(int childCount, int i) {
-        View view = getFocusedChild();
-        if(null != view) {
-            position = getChildAdapterPosition(view) - getFirstVisiblePosition();
-            if (position < 0) {
-                return i;
-            } else {
-                if (i == childCount - 1) {//这是最后一个需要刷新的item
-                    if (position > i) {
-                        position = i;
-                    }
-                    return position;
-                }
-                if (i == position) {//这是原本要在最后一个刷新的item
-                    return childCount - 1;
-                }
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+
+        final WindowManager windowManager =
+                (WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE);
+        final float refreshRate = windowManager.getDefaultDisplay().getRefreshRate();
+        mFrameIntervalMs = (refreshRate >= 30 ? (long) (1000 / refreshRate) : DEFAULT_FRAME_INTERVAL_MS);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        removeCallbacks(mPrefetchRunnable);
+        mPrefetchScheduled = false;
+
+        removeCallbacks(mKeyRepeatRunnable);
+        mKeyRepeatScheduled = false;
+        mKeyRepeatSteps = 0;
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        mFocusedChildIndex = findFocusedChildIndex();
+        super.dispatchDraw(canvas);
+        schedulePrefetch();
+    }
+
+    /**
+     * Enables creating and binding the items the layout expects to show next
+     * in the time left of each frame, see
+     * {@link TwoWayLayoutManager#collectPrefetchPositions(int[])}. Prefetched
+     * views wait in the view cache, which is grown to hold them while enabled.
+     */
+    public void setItemPrefetchEnabled(boolean enabled) {
+        mItemPrefetchEnabled = enabled;
+        if (!enabled) {
+            removeCallbacks(mPrefetchRunnable);
+            mPrefetchScheduled = false;
+            mPrefetchCacheSize = 0;
+            applyItemViewCacheSize(mItemViewCacheSize);
+        }
+    }
+
+    /**
+     * Sets the view cache size. While prefetching is enabled the cache is
+     * kept large enough for the prefetched views, so a smaller size only
+     * shrinks it down to that.
+     */
+    @Override
+    public void setItemViewCacheSize(int size) {
+        mItemViewCacheSize = size;
+        applyItemViewCacheSize(mItemPrefetchEnabled ? Math.max(size, mPrefetchCacheSize) : size);
+    }
+
+    private void applyItemViewCacheSize(int size) {
+        if (size != mAppliedItemViewCacheSize) {
+            mAppliedItemViewCacheSize = size;
+            super.setItemViewCacheSize(size);
+        }
+    }
+
+    public boolean isItemPrefetchEnabled() {
+        return mItemPrefetchEnabled;
+    }
+
+    private void schedulePrefetch() {
+        if (!mItemPrefetchEnabled || mPrefetchScheduled ||
+                !(getLayoutManager() instanceof TwoWayLayoutManager)) {
+            return;
+        }
+
+        // Nothing to prefetch while the list stands still.
+        if (!((TwoWayLayoutManager) getLayoutManager()).hasPrefetchDirection()) {
+            return;
+        }
+
+        // Runs once the current traversal is done, with whatever is left of
+        // the frame that is being drawn.
+        mPrefetchDeadline = getDrawingTime() + mFrameIntervalMs;
+        mPrefetchScheduled = true;
+        post(mPrefetchRunnable);
+    }
+
+    private void prefetchItems() {
+        mPrefetchScheduled = false;
+
+        if (!(getLayoutManager() instanceof TwoWayLayoutManager) || getAdapter() == null ||
+                hasPendingAdapterUpdates() || isLayoutRequested()) {
+            return;
+        }
+
+        final TwoWayLayoutManager layout = (TwoWayLayoutManager) getLayoutManager();
+        final int count = layout.collectPrefetchPositions(mPrefetchPositions);
+
+        // Prefetched views that don't fit in the cache would spill into the
+        // shared pool and be bound again once they're shown.
+        if (count > mPrefetchCacheSize) {
+            mPrefetchCacheSize = count;
+            applyItemViewCacheSize(Math.max(mItemViewCacheSize, count));
+        }
+
+        for (int i = 0; i < count; i++) {
+            final long start = SystemClock.uptimeMillis();
+            if (start + Math.max(1, mPrefetchItemCostMs) > mPrefetchDeadline) {
+                break;
             }
+
+            if (layout.prefetchPosition(mPrefetchPositions[i])) {
+                // Running estimate of how long creating and binding an item takes.
+                final long cost = SystemClock.uptimeMillis() - start;
+                mPrefetchItemCostMs = (mPrefetchItemCostMs + cost + 1) / 2;
+            }
+        }
+    }
+
+    private int findChildIndex(View child) {
+        // Children are attached in position order, so the index is usually
+        // the distance from the first child.
+        final int index = getChildLayoutPosition(child) - getFirstVisiblePosition();
+        if (index >= 0 && index < getChildCount() && getChildAt(index) == child) {
+            return index;
+        }
+
+        return indexOfChild(child);
+    }
+
+    private int findFocusedChildIndex() {
+        final View focused = getFocusedChild();
+        return (focused != null ? findChildIndex(focused) : -1);
+    }
+
+    /**
+     * The focused child is drawn last, redraw only if it's a different child
+     * than the one drawn last in the previous frame.
+     */
+    private void invalidateIfDrawingOrderChanged(View focused) {
+        if (findChildIndex(focused) != mFocusedChildIndex) {
+            invalidate();
+        }
+    }
+
+    @Override
+    protected int getChildDrawingOrder(int childCount, int i) {
+        // Resolved once per frame in dispatchDraw().
+        final int focusedIndex = Math.min(mFocusedChildIndex, childCount - 1);
+        if (focusedIndex < 0) {
+            return i;
+        }
+
+        if (i == childCount - 1) {//这是最后一个需要刷新的item
+            return focusedIndex;
+        }
+        if (i == focusedIndex) {//这是原本要在最后一个刷新的item
+            return childCount - 1;
         }
         return i;
     }
@@ -388,8 +591,31 @@ public class TvRecyclerView extends RecyclerView {
         return mScrollState == SCROLL_STATE_SETTLING;
     }
 
+    private void updateKeyRepeatDirection(KeyEvent event) {
+        if (!mIsBaseLayoutManager) {
+            return;
+        }
+
+        final BaseLayoutManager layout = (BaseLayoutManager) getLayoutManager();
+
+        TwoWayLayoutManager.Direction direction = null;
+        if (event.getAction() == KeyEvent.ACTION_DOWN && event.getRepeatCount() > 0) {
+            final boolean isVertical = isVertical();
+            final int keyCode = event.getKeyCode();
+            if (keyCode == (isVertical ? KeyEvent.KEYCODE_DPAD_DOWN : KeyEvent.KEYCODE_DPAD_RIGHT)) {
+                direction = TwoWayLayoutManager.Direction.END;
+            } else if (keyCode == (isVertical ? KeyEvent.KEYCODE_DPAD_UP : KeyEvent.KEYCODE_DPAD_LEFT)) {
+                direction = TwoWayLayoutManager.Direction.START;
+            }
+        }
+
+        layout.setKeyRepeatDirection(direction);
+    }
+
     @Override
     public boolean dispatchKeyEvent(KeyEvent event) {
+        updateKeyRepeatDirection(event);
+
         switch (event.getAction()) {
             case KeyEvent.ACTION_DOWN:
                 if(onKeyDown(event.getKeyCode(), event))
@@ -423,44 +649,232 @@ public class TvRecyclerView extends RecyclerView {
         
         if(direction == -1 || hasInBorder(direction)) {
             return false;
-        } else {
-            FocusFinder ff = FocusFinder.getInstance();
-            View newFocusedView = ff.findNextFocus(this, getFocusedChild(), direction);
-            if (null != newFocusedView) {
-                newFocusedView.requestFocus();
-            }
+        } else if (event.getRepeatCount() > 0 && queueKeyRepeat(direction, event.getRepeatCount())) {
+            return true;
+        } else if (!requestNextFocus(direction)) {
+            moveFocusWithFocusFinder(direction);
         }
         return true;
     }
     
+    /**
+     * Asks the layout for the position to focus next and focuses it, scrolling
+     * it into view first if it isn't attached.
+     *
+     * @return false if the layout can't tell, in which case FocusFinder is used.
+     */
+    private boolean requestNextFocus(int direction) {
+        final int position = findNextFocusPosition(direction, 1);
+        if (position == NO_POSITION) {
+            return false;
+        }
+
+        focusPosition(position);
+        return true;
+    }
+
+    /**
+     * Returns the position the given number of focus moves away from the
+     * focused item (or from the one waiting to be focused), stopping early
+     * where the layout can't tell, or NO_POSITION if no move can be made.
+     */
+    private int findNextFocusPosition(int direction, int steps) {
+        if (!(getLayoutManager() instanceof TwoWayLayoutManager)) {
+            return NO_POSITION;
+        }
+
+        int position = mPendingFocusPosition;
+        if (position == NO_POSITION) {
+            final View focused = getFocusedChild();
+            if (focused == null) {
+                return NO_POSITION;
+            }
+
+            position = getChildLayoutPosition(focused);
+        }
+
+        final TwoWayLayoutManager layout = (TwoWayLayoutManager) getLayoutManager();
+        int target = NO_POSITION;
+        for (int i = 0; i < steps; i++) {
+            final int next = layout.findNextFocusPosition(position, direction);
+            if (next == NO_POSITION) {
+                break;
+            }
+
+            target = position = next;
+        }
+
+        return target;
+    }
+
+    private void focusPosition(int position) {
+        final View target = getLayoutManager().findViewByPosition(position);
+        if (target != null) {
+            mPendingFocusPosition = NO_POSITION;
+            target.requestFocus();
+        } else {
+            mPendingFocusPosition = position;
+            scrollToFocusPosition(position);
+        }
+    }
+
+    /**
+     * Brings the given position, which isn't attached, into view the way
+     * focusing it would: positions before the first visible one end up at
+     * the selected item start offset, positions after it at the end offset.
+     * The target is assumed to be as large as the focused item, the focus
+     * request fixes the rest once it's laid out.
+     */
+    private void scrollToFocusPosition(int position) {
+        if (!mIsBaseLayoutManager) {
+            scrollToPosition(position);
+            return;
+        }
+
+        final BaseLayoutManager layout = (BaseLayoutManager) getLayoutManager();
+        final View focused = getFocusedChild();
+        if (focused == null || position < getFirstVisiblePosition()) {
+            layout.scrollToPositionWithOffset(position, mSelectedItemOffsetStart);
+            return;
+        }
+
+        final int space = (isVertical() ? getFreeHeight() : getFreeWidth());
+        final int size = (isVertical() ? focused.getHeight() : focused.getWidth());
+        layout.scrollToPositionWithOffset(position,
+                Math.max(mSelectedItemOffsetStart, space - size - mSelectedItemOffsetEnd));
+    }
+
+    /**
+     * Queues a repeated key event to be applied on the next animation frame,
+     * together with every other repeat received until then. Past
+     * KEY_REPEAT_ACCELERATION_THRESHOLD repeats each event moves the focus
+     * {@link #setAcceleratedKeyRepeatSteps(int)} positions at once.
+     *
+     * @return false if the key repeat can't be coalesced.
+     */
+    private boolean queueKeyRepeat(int direction, int repeatCount) {
+        if (!mKeyRepeatCoalescingEnabled || !(getLayoutManager() instanceof TwoWayLayoutManager)) {
+            return false;
+        }
+
+        if (mKeyRepeatFocusDirection != direction) {
+            mKeyRepeatFocusDirection = direction;
+            mKeyRepeatSteps = 0;
+        }
+
+        mKeyRepeatSteps +=
+                (repeatCount >= KEY_REPEAT_ACCELERATION_THRESHOLD ? mAcceleratedKeyRepeatSteps : 1);
+
+        if (!mKeyRepeatScheduled) {
+            mKeyRepeatScheduled = true;
+            ViewCompat.postOnAnimation(this, mKeyRepeatRunnable);
+        }
+
+        return true;
+    }
+
+    private void applyKeyRepeat() {
+        mKeyRepeatScheduled = false;
+
+        final int direction = mKeyRepeatFocusDirection;
+        final int steps = mKeyRepeatSteps;
+        mKeyRepeatSteps = 0;
+
+        if (direction == -1 || steps == 0 || hasInBorder(direction)) {
+            return;
+        }
+
+        // A single jump per frame. Positions in between are skipped over
+        // without being laid out or bound, and a target past the visible
+        // items is scrolled to the selected item offset on its side.
+        final int position = findNextFocusPosition(direction, steps);
+        if (position != NO_POSITION) {
+            focusPosition(position);
+        } else {
+            moveFocusWithFocusFinder(direction);
+        }
+    }
+
+    private void moveFocusWithFocusFinder(int direction) {
+        FocusFinder ff = FocusFinder.getInstance();
+        View newFocusedView = ff.findNextFocus(this, getFocusedChild(), direction);
+        if (null != newFocusedView) {
+            newFocusedView.requestFocus();
+        }
+    }
+
+    /**
+     * Enables merging the key repeats received within a frame into a single
+     * focus move, accelerating once a key has been held for a while.
+     */
+    public void setKeyRepeatCoalescingEnabled(boolean enabled) {
+        mKeyRepeatCoalescingEnabled = enabled;
+    }
+
+    public boolean isKeyRepeatCoalescingEnabled() {
+        return mKeyRepeatCoalescingEnabled;
+    }
+
+    /**
+     * Sets how many positions each key repeat moves the focus once the key
+     * has been held past the acceleration threshold.
+     */
+    public void setAcceleratedKeyRepeatSteps(int steps) {
+        if (steps < 1) {
+            throw new IllegalArgumentException("Accelerated key repeat steps must be at least 1");
+        }
+
+        mAcceleratedKeyRepeatSteps = steps;
+    }
+
+    public int getAcceleratedKeyRepeatSteps() {
+        return mAcceleratedKeyRepeatSteps;
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        super.onLayout(changed, l, t, r, b);
+        updateOrientation();
+
+        if (mPendingFocusPosition != NO_POSITION) {
+            final View target = getLayoutManager().findViewByPosition(mPendingFocusPosition);
+            mPendingFocusPosition = NO_POSITION;
+
+            if (target != null) {
+                target.requestFocus();
+            }
+        }
+    }
+
     private boolean hasInBorder(int direction) {
         boolean result = false;
         final View view = getFocusedChild();
         if(null != view) {
-            Rect outRect = new Rect();
-            getLayoutManager().calculateItemDecorationsForChild(view, outRect);
+            // The decoration insets cached by RecyclerView for the last layout,
+            // rather than asking every decoration again on each key event.
+            final LayoutManager layout = getLayoutManager();
             LayoutParams lp = (LayoutParams) view.getLayoutParams();
             switch (direction) {
                 case FOCUS_DOWN:
-                    result = getHeight() - view.getBottom() <= getPaddingBottom() + lp.bottomMargin + outRect.bottom;
+                    result = getHeight() - view.getBottom() <= getPaddingBottom() + lp.bottomMargin + layout.getBottomDecorationHeight(view);
                     if(isVertical()) {
                         result = result && getLastVisiblePosition() == (getAdapter().getItemCount() - 1);
                     }
                     break;
                 case FOCUS_UP:
-                    result = view.getTop() <= getPaddingTop() + lp.topMargin + outRect.top;
+                    result = view.getTop() <= getPaddingTop() + lp.topMargin + layout.getTopDecorationHeight(view);
                     if(isVertical()) {
                         result = result && getFirstVisiblePosition() == 0;
                     }
                     break;
                 case FOCUS_LEFT:
-                    result = view.getLeft() <= getPaddingLeft() + lp.leftMargin + outRect.left;
+                    result = view.getLeft() <= getPaddingLeft() + lp.leftMargin + layout.getLeftDecorationWidth(view);
                     if(!isVertical()) {
                         result = result && getFirstVisiblePosition() == 0;
                     }
                     break;
                 case FOCUS_RIGHT:
-                    result = getWidth() - view.getRight() <= getPaddingRight() + lp.rightMargin + outRect.right;
+                    result = getWidth() - view.getRight() <= getPaddingRight() + lp.rightMargin + layout.getRightDecorationWidth(view);
                     if(!isVertical()) {
                         result = result && getLastVisiblePosition() == (getAdapter().getItemCount() - 1);
                     }
@@ -478,14 +892,11 @@ public class TvRecyclerView extends RecyclerView {
 
     @Override
     protected void onFocusChanged(boolean gainFocus, int direction, Rect previouslyFocusedRect) {
-        Log.e(LOGTAG, "onFocusChanged..." + gainFocus + " ,direction="+direction);
-        super.onFocusChanged(gainFocus, direction, previouslyFocusedRect);
-    }
+        if (mLayoutTracer != null) {
+            mLayoutTracer.onFocusChanged(gainFocus, direction);
+        }
 
-    @Override
-    public boolean hasFocus() {
-        Log.e(LOGTAG, "hasFocus...");
-        return super.hasFocus();
+        super.onFocusChanged(gainFocus, direction, previouslyFocusedRect);
     }
 
     @Override
@@ -512,4 +923,21 @@ public class TvRecyclerView extends RecyclerView {
     public void setOnItemListener(OnItemListener onItemListener) {
         mOnItemListener = onItemListener;
     }
+
+    /**
+     * Installs a tracer receiving the focus events of this view and the
+     * layout events of its {@link TwoWayLayoutManager}, or removes it when null.
+     */
+    public void setLayoutTracer(LayoutTracer tracer) {
+        mLayoutTracer = tracer;
+
+        final LayoutManager layout = getLayoutManager();
+        if (layout instanceof TwoWayLayoutManager) {
+            ((TwoWayLayoutManager) layout).setLayoutTracer(tracer);
+        }
+    }
+
+    public LayoutTracer getLayoutTracer() {
+        return mLayoutTracer;
+    }
 }
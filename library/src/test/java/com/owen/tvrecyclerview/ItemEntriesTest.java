@@ -0,0 +1,83 @@
+package com.owen.tvrecyclerview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ItemEntriesTest {
+    private static ItemEntries createEntries(int count) {
+        final ItemEntries itemEntries = new ItemEntries();
+        for (int i = 0; i < count; i++) {
+            // The height identifies the original position of each entry.
+            itemEntries.putItemEntry(i, i % 2, i % 2, 1, 100, 1000 + i);
+        }
+
+        return itemEntries;
+    }
+
+    @Test
+    public void moveWithinTableRotatesEntries() {
+        final ItemEntries itemEntries = createEntries(10);
+
+        itemEntries.moveItemEntries(2, 6, 1);
+
+        assertEquals(1002, itemEntries.getHeight(6));
+        for (int i = 2; i < 6; i++) {
+            assertEquals(1000 + i + 1, itemEntries.getHeight(i));
+        }
+        assertEquals(1007, itemEntries.getHeight(7));
+    }
+
+    @Test
+    public void moveForwardPastTableDropsMovedEntries() {
+        final ItemEntries itemEntries = createEntries(22);
+        final int size = itemEntries.size();
+
+        itemEntries.moveItemEntries(5, 500, 1);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(1000 + i, itemEntries.getHeight(i));
+        }
+        for (int i = 5; i < 21; i++) {
+            assertEquals(1000 + i + 1, itemEntries.getHeight(i));
+        }
+
+        // The moved entry is gone, not left at the end of the table.
+        for (int i = 21; i < itemEntries.size(); i++) {
+            assertFalse(itemEntries.hasItemEntry(i));
+        }
+        assertTrue(itemEntries.size() <= size);
+    }
+
+    @Test
+    public void moveBackwardFromPastTableLeavesEmptySlots() {
+        final ItemEntries itemEntries = createEntries(22);
+
+        itemEntries.moveItemEntries(400, 3, 2);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1000 + i, itemEntries.getHeight(i));
+        }
+        assertFalse(itemEntries.hasItemEntry(3));
+        assertFalse(itemEntries.hasItemEntry(4));
+        for (int i = 5; i < 24; i++) {
+            assertEquals(1000 + i - 2, itemEntries.getHeight(i));
+        }
+    }
+
+    @Test
+    public void moveInvalidatesLanesOfShiftedEntries() {
+        final ItemEntries itemEntries = createEntries(22);
+        final Lanes.LaneInfo laneInfo = new Lanes.LaneInfo();
+
+        itemEntries.moveItemEntries(5, 500, 1);
+
+        itemEntries.getLane(4, laneInfo);
+        assertFalse(laneInfo.isUndefined());
+
+        itemEntries.getLane(5, laneInfo);
+        assertTrue(laneInfo.isUndefined());
+    }
+}
@@ -0,0 +1,137 @@
+package com.owen.tvrecyclerview;
+
+import com.owen.tvrecyclerview.Lanes.LaneInfo;
+import com.owen.tvrecyclerview.TwoWayLayoutManager.Direction;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class SkylinePlacementTest {
+    private static final int LANE_SIZE = 10;
+
+    /**
+     * The lane search Lanes did over its lane rects before the edges were
+     * kept in a LaneEdgeTree, for vertical lanes. Rects are {left, top,
+     * right, bottom} and intersect as in android.graphics.Rect.
+     */
+    private static class RectLanes {
+        private final int[][] mLanes;
+
+        RectLanes(int[] starts, int[] ends) {
+            mLanes = new int[starts.length][];
+            for (int i = 0; i < starts.length; i++) {
+                mLanes[i] = new int[] { i * LANE_SIZE, starts[i], (i + 1) * LANE_SIZE, ends[i] };
+            }
+        }
+
+        private static boolean intersects(int[] a, int[] b) {
+            return a[0] < b[2] && b[0] < a[2] && a[1] < b[3] && b[1] < a[3];
+        }
+
+        private int[] getChildFrame(int childWidth, int childHeight, int startLane,
+                                    int anchorLane, Direction direction) {
+            final int[] startRect = mLanes[startLane];
+            final int[] anchorRect =
+                    mLanes[direction == Direction.END ? anchorLane : startLane];
+
+            final int left = startRect[0];
+            final int top = (direction == Direction.END ? anchorRect[3] :
+                    anchorRect[1] - childHeight);
+            return new int[] { left, top, left + childWidth, top + childHeight };
+        }
+
+        private int findLaneThatFitsSpan(int anchorLane, int laneSpan, Direction direction) {
+            final int findStart = Math.max(0, anchorLane - laneSpan + 1);
+            final int findEnd = Math.min(findStart + laneSpan, mLanes.length - laneSpan + 1);
+            for (int l = findStart; l < findEnd; l++) {
+                final int[] frame =
+                        getChildFrame(laneSpan * LANE_SIZE, 1, l, anchorLane, direction);
+
+                boolean intersects = false;
+                for (int i = l; i < l + laneSpan; i++) {
+                    intersects |= intersects(mLanes[i], frame);
+                }
+
+                if (!intersects) {
+                    return l;
+                }
+            }
+
+            return Lanes.NO_LANE;
+        }
+
+        void findLane(LaneInfo outInfo, int laneSpan, Direction direction) {
+            outInfo.setUndefined();
+
+            int targetEdge = (direction == Direction.END ? Integer.MAX_VALUE : Integer.MIN_VALUE);
+            for (int l = 0; l < mLanes.length; l++) {
+                final int laneEdge = (direction == Direction.END ? mLanes[l][3] : mLanes[l][1]);
+
+                if ((direction == Direction.END && laneEdge < targetEdge) ||
+                    (direction == Direction.START && laneEdge > targetEdge)) {
+
+                    final int targetLane = findLaneThatFitsSpan(l, laneSpan, direction);
+                    if (targetLane != Lanes.NO_LANE) {
+                        targetEdge = laneEdge;
+                        outInfo.set(targetLane, l);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void findsSameLanesAsRectSearch() {
+        final Random random = new Random(42);
+        final LaneInfo expected = new LaneInfo();
+        final LaneInfo actual = new LaneInfo();
+
+        for (int run = 0; run < 100000; run++) {
+            final int laneCount = 1 + random.nextInt(8);
+            final int[] starts = new int[laneCount];
+            final int[] ends = new int[laneCount];
+
+            final LaneEdgeTree edges = new LaneEdgeTree(laneCount);
+            for (int i = 0; i < laneCount; i++) {
+                // Few distinct edges so that ties and empty lanes are common.
+                starts[i] = 10 * random.nextInt(5);
+                ends[i] = starts[i] + 10 * random.nextInt(4);
+                edges.set(i, starts[i], ends[i]);
+            }
+
+            final RectLanes rectLanes = new RectLanes(starts, ends);
+            final int laneSpan = 1 + random.nextInt(laneCount + 1);
+            final Direction direction = (random.nextBoolean() ? Direction.END : Direction.START);
+
+            rectLanes.findLane(expected, laneSpan, direction);
+            SkylinePlacement.findLane(edges, laneCount, laneSpan, direction, actual);
+
+            final String message = "starts " + Arrays.toString(starts) +
+                    ", ends " + Arrays.toString(ends) +
+                    ", span " + laneSpan + ", " + direction;
+            assertEquals(message, expected.startLane, actual.startLane);
+            assertEquals(message, expected.anchorLane, actual.anchorLane);
+        }
+    }
+
+    @Test
+    public void spanningItemTowardsStartDoesNotOverlapItsLanes() {
+        final LaneEdgeTree edges = new LaneEdgeTree(4);
+        final int[] starts = { 10, 0, 30, 0 };
+        for (int i = 0; i < starts.length; i++) {
+            edges.set(i, starts[i], 50);
+        }
+
+        final LaneInfo laneInfo = new LaneInfo();
+        SkylinePlacement.findLane(edges, 4, 2, Direction.START, laneInfo);
+
+        // Placed against the start of lane 0 it would overlap lane 1, so it
+        // goes to lanes 1 and 2, above the start of both.
+        assertEquals(1, laneInfo.startLane);
+        assertEquals(2, laneInfo.anchorLane);
+    }
+}
@@ -0,0 +1,119 @@
+package com.owen.tvrecyclerview.widget;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.view.ViewGroup;
+
+import com.owen.tvrecyclerview.BuildConfig;
+import com.owen.tvrecyclerview.SpanSizeLookup;
+import com.owen.tvrecyclerview.TwoWayLayoutManager.Orientation;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class SpannableGridLayoutManagerTest {
+    private static final int COLUMN_COUNT = 3;
+    private static final int LANE_SIZE = 100;
+
+    private static class ItemAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+        private final int mItemCount;
+
+        ItemAdapter(int itemCount) {
+            mItemCount = itemCount;
+        }
+
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new RecyclerView.ViewHolder(new View(parent.getContext())) {
+            };
+        }
+
+        @Override
+        public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        }
+
+        @Override
+        public int getItemCount() {
+            return mItemCount;
+        }
+    }
+
+    /**
+     * Lays out a vertical grid of square cells where the item at
+     * bigPosition spans bigSpan columns and rows.
+     */
+    private static SpannableGridLayoutManager layOut(int itemCount, final int bigPosition,
+                                                     final int bigSpan, final int bigRowSpan) {
+        final SpannableGridLayoutManager layout =
+                new SpannableGridLayoutManager(Orientation.VERTICAL, COLUMN_COUNT, COLUMN_COUNT);
+        layout.setSpanSizeLookup(new SpanSizeLookup() {
+            @Override
+            public int getColSpan(int position) {
+                return (position == bigPosition ? bigSpan : 1);
+            }
+
+            @Override
+            public int getRowSpan(int position) {
+                return (position == bigPosition ? bigRowSpan : 1);
+            }
+        });
+
+        final RecyclerView recyclerView = new RecyclerView(RuntimeEnvironment.application);
+        recyclerView.setLayoutManager(layout);
+        recyclerView.setAdapter(new ItemAdapter(itemCount));
+
+        final int width = COLUMN_COUNT * LANE_SIZE;
+        final int height = 10 * LANE_SIZE;
+        recyclerView.measure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, width, height);
+
+        return layout;
+    }
+
+    @Test
+    public void focusFollowsLanesAroundItemSpanningSeveralLanes() {
+        // Item 0 takes the first two columns of the first two rows, items 1
+        // and 2 stack up in the third column next to it:
+        //
+        //   0 0 1
+        //   0 0 2
+        //   3 4 5
+        final SpannableGridLayoutManager layout = layOut(10, 0, 2, 2);
+
+        assertEquals(2, layout.findNextFocusPosition(1, View.FOCUS_DOWN));
+        assertEquals(5, layout.findNextFocusPosition(2, View.FOCUS_DOWN));
+        assertEquals(3, layout.findNextFocusPosition(0, View.FOCUS_DOWN));
+        assertEquals(0, layout.findNextFocusPosition(4, View.FOCUS_UP));
+        assertEquals(1, layout.findNextFocusPosition(2, View.FOCUS_UP));
+
+        // Moves across lanes are left to FocusFinder.
+        assertEquals(RecyclerView.NO_POSITION, layout.findNextFocusPosition(1, View.FOCUS_LEFT));
+    }
+
+    @Test
+    public void lastChildInLaneFollowsItemSpanningSeveralLanes() {
+        // Item 5 doesn't fit next to items 3 and 4, so it ends two lanes on
+        // its own row and item 4 isn't the last one in its lane:
+        //
+        //   0 1 2
+        //   3 4 6
+        //   5 5
+        final SpannableGridLayoutManager layout = layOut(7, 5, 2, 1);
+
+        assertFalse(layout.isLastChildInLane(3, 7));
+        assertFalse(layout.isLastChildInLane(4, 7));
+        assertTrue(layout.isLastChildInLane(5, 7));
+        assertTrue(layout.isLastChildInLane(6, 7));
+    }
+}
@@ -0,0 +1,124 @@
+package com.owen.tvrecyclerview.widget;
+
+import android.app.Activity;
+import android.support.v7.widget.RecyclerView;
+import android.view.KeyEvent;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.view.ViewGroup;
+
+import com.owen.tvrecyclerview.BuildConfig;
+import com.owen.tvrecyclerview.TwoWayLayoutManager.Orientation;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class TvRecyclerViewTest {
+    private static final int KEY_EVENTS = 1000;
+
+    private static class ItemAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            final View view = new View(parent.getContext());
+            view.setLayoutParams(new ViewGroup.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, 100));
+            view.setFocusable(true);
+            view.setFocusableInTouchMode(true);
+            return new RecyclerView.ViewHolder(view) {
+            };
+        }
+
+        @Override
+        public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        }
+
+        @Override
+        public int getItemCount() {
+            return 50;
+        }
+    }
+
+    /**
+     * Bytes allocated by the current thread so far, see
+     * com.sun.management.ThreadMXBean.
+     */
+    private static long getAllocatedBytes() {
+        final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static TvRecyclerView createFocusedList() {
+        final Activity activity = Robolectric.setupActivity(Activity.class);
+        final TvRecyclerView recyclerView = new TvRecyclerView(activity);
+        recyclerView.setLayoutManager(new ListLayoutManager(activity, Orientation.VERTICAL));
+        recyclerView.setAdapter(new ItemAdapter());
+        activity.setContentView(recyclerView);
+
+        recyclerView.measure(MeasureSpec.makeMeasureSpec(300, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(500, MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, 300, 500);
+
+        final View first = recyclerView.getChildAt(0);
+        assertTrue(first.requestFocus());
+        assertSame(first, recyclerView.getFocusedChild());
+
+        return recyclerView;
+    }
+
+    @Test
+    public void keysAtBorderDoNotAllocate() {
+        final TvRecyclerView recyclerView = createFocusedList();
+
+        // The focused first item is at the top, left and right borders, so
+        // these keys are left to the framework without moving the focus.
+        final int[] keyCodes = {
+                KeyEvent.KEYCODE_DPAD_UP, KeyEvent.KEYCODE_DPAD_LEFT, KeyEvent.KEYCODE_DPAD_RIGHT
+        };
+        final KeyEvent[] events = new KeyEvent[keyCodes.length];
+        for (int i = 0; i < keyCodes.length; i++) {
+            events[i] = new KeyEvent(KeyEvent.ACTION_DOWN, keyCodes[i]);
+            assertFalse(recyclerView.onKeyDown(keyCodes[i], events[i]));
+        }
+
+        final long allocatedBefore = getAllocatedBytes();
+        for (int i = 0; i < KEY_EVENTS; i++) {
+            final KeyEvent event = events[i % events.length];
+            recyclerView.onKeyDown(event.getKeyCode(), event);
+        }
+        final long allocated = getAllocatedBytes() - allocatedBefore;
+
+        assertEquals(0, allocated / KEY_EVENTS);
+    }
+
+    @Test
+    public void focusSearchDoesNotAllocate() {
+        final TvRecyclerView recyclerView = createFocusedList();
+        final ListLayoutManager layout = (ListLayoutManager) recyclerView.getLayoutManager();
+
+        // The position a D-pad move goes to is asked to the layout before
+        // anything is focused or scrolled.
+        assertEquals(1, layout.findNextFocusPosition(0, View.FOCUS_DOWN));
+        assertEquals(0, layout.findNextFocusPosition(1, View.FOCUS_UP));
+
+        final long allocatedBefore = getAllocatedBytes();
+        for (int i = 0; i < KEY_EVENTS; i++) {
+            layout.findNextFocusPosition(i % 2, (i % 2 == 0 ? View.FOCUS_DOWN : View.FOCUS_UP));
+        }
+        final long allocated = getAllocatedBytes() - allocatedBefore;
+
+        assertEquals(0, allocated / KEY_EVENTS);
+    }
+}